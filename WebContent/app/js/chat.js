@@ -21,7 +21,7 @@ var activeUsers;
 // ];
 
 // **** WEBSOCKET INIT ****
-const urlChat = buildApiUrl(Util.API.WS, Util.IP.LOCAL, 8080, Util.APP_NAME, Util.RES.CHAT);
+const urlChat = buildApiUrl(Util.API.WS, Util.IP.LOCAL, 8080, Util.APP_NAME, Util.RES.CHAT + '/' + currentRoom());
 const chatWebSocket = new WebSocket(urlChat);
 
 // **** WEBSOCKET **** 
@@ -16,8 +16,10 @@ var lastEvent;
 var drawing = false;
 
 // **** WEBSOCKET INIT ****
-const urlDraw = buildApiUrl(Util.API.WS, Util.IP.LOCAL, 8080, Util.APP_NAME, Util.RES.DRAW);
+// binary stroke format is negotiated, see stroke-codec.js
+const urlDraw = buildApiUrl(Util.API.WS, Util.IP.LOCAL, 8080, Util.APP_NAME, Util.RES.DRAW + '/' + currentRoom()) + '?format=binary';
 const drawingWebSocket = new WebSocket(urlDraw);
+drawingWebSocket.binaryType = 'arraybuffer';
 
 // **** WINDOW ****
 window.onresize = async function () {
@@ -58,8 +60,12 @@ drawingWebSocket.onopen = function (event) {
 	drawingWebSocket.send(window.localStorage.getItem(Util.TOKEN_HEADER));
 };
 drawingWebSocket.onmessage = function (event) {
-	console.log('DrawingWebSocket: Message received from the server');
-	readDrawWebsocketMessage(JSON.parse(event.data));
+	if (event.data instanceof ArrayBuffer) {
+		decodeStrokes(event.data).forEach(readDrawWebsocketMessage);
+	} else {
+		// JSON strokes come one segment per message
+		readDrawWebsocketMessage(JSON.parse(event.data));
+	}
 };
 drawingWebSocket.onclose = function (event) {
 	console.log(`DrawingWebSocket: Connection closed, code=${event.code} reason=${event.reason}`);
@@ -127,11 +133,21 @@ function fillGradient() {
 	ctx1.fillRect(0, 0, width1, height1);
 }
 
+/**
+ * Binary strokes carry a palette color, the picked color is snapped to it so
+ * the drawing user sees the same color as the others.
+ * @param {Uint8ClampedArray} imageData picked pixel
+ * @returns {String} rgba(r,g,b,1) of the closest palette color
+ */
+function pickedColor(imageData) {
+	return paletteIndexToColor(colorToPaletteIndex('rgba(' + imageData[0] + ',' + imageData[1] + ',' + imageData[2] + ',1)'));
+}
+
 function changeColor(e) {
 	x = e.offsetX;
 	y = e.offsetY;
 	var imageData = ctx1.getImageData(x, y, 1, 1).data;
-	rgbaColor = 'rgba(' + imageData[0] + ',' + imageData[1] + ',' + imageData[2] + ',1)';
+	rgbaColor = pickedColor(imageData);
 	colorLabel.style.backgroundColor = rgbaColor;
 }
 
@@ -142,7 +158,7 @@ colorStrip.onclick = function (e) {
 	x = e.offsetX;
 	y = e.offsetY;
 	var imageData = ctx2.getImageData(x, y, 1, 1).data;
-	rgbaColor = 'rgba(' + imageData[0] + ',' + imageData[1] + ',' + imageData[2] + ',1)';
+	rgbaColor = pickedColor(imageData);
 	colorLabel.style.backgroundColor = rgbaColor;
 	fillGradient();
 };
@@ -244,15 +260,14 @@ function readDrawWebsocketMessage(msg) {
  * @param {String} color 
  */
 function sendStroke(from, to, size, color) {
-	const drawingMessage = new DrawingMessage(from, to, size, color);
-	prepareWebsocketMessage(drawingMessage);
+	prepareWebsocketMessage(encodeStroke(from, to, size, color));
 }
 
 /**
- * @param {DrawingMessage} drawingMessage 
+ * @param {ArrayBuffer} stroke binary stroke frame
  */
-function prepareWebsocketMessage(drawingMessage) {
+function prepareWebsocketMessage(stroke) {
 	if (drawingWebSocket.readyState === drawingWebSocket.OPEN) {
-		drawingWebSocket.send(JSON.stringify(drawingMessage));
+		drawingWebSocket.send(stroke);
 	}
 }
\ No newline at end of file
@@ -5,6 +5,7 @@
 function login() {
     const username = document.getElementById('username').value;
     const password = document.getElementById('password').value;
+    const room = document.getElementById('room').value.trim();
     const credentials = new Credentials(username, password);
 
     // Set username in memory
@@ -23,6 +24,7 @@ function login() {
         .then(data => {
             if (data != null) {
                 window.localStorage.setItem(Util.TOKEN_HEADER, data);
+                window.localStorage.setItem(Util.ROOM_HEADER, room.length > 0 ? room : Util.DEFAULT_ROOM);
                 window.location.href = Util.ROUTE.Login2Game;
             } else {
                 console.error('Token was null.')
@@ -0,0 +1,101 @@
+/**
+ * Compact binary stroke format, see service.StrokeCodec on the server side.
+ *
+ * Frame: version byte, then polylines. Polyline: palette index (1 byte),
+ * number of points (2 bytes), first point (2 + 2 bytes), then zig-zag varint
+ * differences to the previous point. Coordinates are fractions of the canvas
+ * size where STROKE_SCALE is the right/bottom edge.
+ */
+
+const STROKE_VERSION = 1;
+const STROKE_SCALE = 4095;
+
+/**
+ * @param {String} color rgba(r,g,b,a)
+ * @returns {number} index in 3-3-2 bit palette
+ */
+function colorToPaletteIndex(color) {
+	const rgb = color.substring(color.indexOf('(') + 1, color.indexOf(')')).split(',').map(Number);
+	return (Math.round(rgb[0] * 7 / 255) << 5) | (Math.round(rgb[1] * 7 / 255) << 2) | Math.round(rgb[2] * 3 / 255);
+}
+
+/**
+ * @param {number} index index in 3-3-2 bit palette
+ * @returns {String} rgba(r,g,b,1)
+ */
+function paletteIndexToColor(index) {
+	const r = Math.round(((index >> 5) & 7) * 255 / 7);
+	const g = Math.round(((index >> 2) & 7) * 255 / 7);
+	const b = Math.round((index & 3) * 255 / 3);
+	return 'rgba(' + r + ',' + g + ',' + b + ',1)';
+}
+
+function quantize(coordinate, size) {
+	return Math.max(0, Math.min(STROKE_SCALE, Math.round(coordinate / size * STROKE_SCALE)));
+}
+
+/**
+ * Encodes single segment as a binary frame.
+ * @param {Cartesian} from
+ * @param {Cartesian} to
+ * @param {Cartesian} size
+ * @param {String} color
+ * @returns {ArrayBuffer}
+ */
+function encodeStroke(from, to, size, color) {
+	const bytes = [STROKE_VERSION, colorToPaletteIndex(color), 0, 2];
+	const x0 = quantize(from.x, size.x);
+	const y0 = quantize(from.y, size.y);
+	bytes.push(x0 >> 8, x0 & 0xFF, y0 >> 8, y0 & 0xFF);
+	pushVarint(bytes, quantize(to.x, size.x) - x0);
+	pushVarint(bytes, quantize(to.y, size.y) - y0);
+	return new Uint8Array(bytes).buffer;
+}
+
+/**
+ * Decodes binary frame to drawing messages, one per segment.
+ * @param {ArrayBuffer} buffer
+ * @returns {Array<DrawingMessage>}
+ */
+function decodeStrokes(buffer) {
+	const bytes = new Uint8Array(buffer);
+	const messages = [];
+	const size = new Cartesian(STROKE_SCALE, STROKE_SCALE);
+	if (bytes[0] !== STROKE_VERSION) {
+		return messages;
+	}
+	const pos = { i: 1 };
+	while (pos.i < bytes.length) {
+		const color = paletteIndexToColor(bytes[pos.i]);
+		const count = (bytes[pos.i + 1] << 8) | bytes[pos.i + 2];
+		var last = new Cartesian((bytes[pos.i + 3] << 8) | bytes[pos.i + 4], (bytes[pos.i + 5] << 8) | bytes[pos.i + 6]);
+		pos.i += 7;
+		for (var p = 1; p < count; p++) {
+			const next = new Cartesian(last.x + readVarint(bytes, pos), last.y + readVarint(bytes, pos));
+			messages.push(new DrawingMessage(last, next, size, color));
+			last = next;
+		}
+	}
+	return messages;
+}
+
+function pushVarint(bytes, value) {
+	var zigzag = ((value << 1) ^ (value >> 31)) >>> 0;
+	while (zigzag > 0x7F) {
+		bytes.push((zigzag & 0x7F) | 0x80);
+		zigzag >>>= 7;
+	}
+	bytes.push(zigzag);
+}
+
+function readVarint(bytes, pos) {
+	var zigzag = 0;
+	for (var shift = 0; shift < 32; shift += 7) {
+		const b = bytes[pos.i++];
+		zigzag |= (b & 0x7F) << shift;
+		if ((b & 0x80) === 0) {
+			break;
+		}
+	}
+	return (zigzag >>> 1) ^ -(zigzag & 1);
+}
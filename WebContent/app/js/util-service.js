@@ -20,7 +20,9 @@ const Util = {
         Login2Game: 'app/html/game.html',
         Game2Login: '../../index.html'
     },
-    TOKEN_HEADER: 'X-Token'
+    TOKEN_HEADER: 'X-Token',
+    ROOM_HEADER: 'X-Room',
+    DEFAULT_ROOM: 'lobby'
 };
 
 // Current state of a user
@@ -29,6 +31,14 @@ const UserInfo = {
     IS_DRAWING: false
 };
 
+/**
+ * Name of the room chosen at login, URL encoded so it can be used as a path segment.
+ */
+function currentRoom() {
+    const room = window.localStorage.getItem(Util.ROOM_HEADER);
+    return encodeURIComponent(room != null && room.length > 0 ? room : Util.DEFAULT_ROOM);
+}
+
 /**
  * Use Util object to build URL easier.
  * @param {string} api 
@@ -0,0 +1,63 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.ActiveUser;
+import model.Score;
+import model.User;
+import service.GameUtil;
+
+/**
+ * Scoreboard is produced after every correct guess and every time somebody
+ * joins or leaves the room.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameUtilBenchmark {
+
+	@Param({ "4", "16", "64" })
+	public int players;
+
+	private GameUtil gameUtil = GameUtil.getInstance();
+	private List<ActiveUser> users;
+
+	@Setup
+	public void setUp() {
+		users = new ArrayList<>(players);
+		for (int i = 0; i < players; i++) {
+			User user = new User((long) i);
+			user.setUsername("gracz" + i);
+			user.setPoints(i * 10);
+			ActiveUser au = new ActiveUser();
+			au.setUser(user);
+			au.setRoom("pokj");
+			au.setChatSessionId("session" + i);
+			au.setDrawing(i == 0);
+			users.add(au);
+		}
+	}
+
+	@Benchmark
+	public List<Score> produceScoreboard() {
+		return gameUtil.produceScoreboard(users);
+	}
+
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.NormalizedWord;
+import service.GameUtil;
+
+/**
+ * Checking chat messages against the word to guess (GameUtil.compareWords).
+ * gc.alloc.rate.norm of normalizedMiss and normalizedHit is 0 B/op, every
+ * chat message that is not the answer costs no garbage.
+ * plainMiss is the old trim().toUpperCase() comparison for reference.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuessMatchingBenchmark {
+
+	@Param({ "w morski" })
+	public String word;
+
+	@Param({ "  chyba to jest kot? ", "zolw morsk" })
+	public String miss;
+
+	private GameUtil gameUtil = GameUtil.getInstance();
+	private NormalizedWord normalized;
+	private String hit;
+
+	@Setup
+	public void setUp() {
+		normalized = new NormalizedWord(word);
+		hit = "  ZOLW   morski ";
+	}
+
+	@Benchmark
+	public boolean normalizedMiss() {
+		return gameUtil.compareWords(miss, normalized);
+	}
+
+	@Benchmark
+	public boolean normalizedHit() {
+		return gameUtil.compareWords(hit, normalized);
+	}
+
+	@Benchmark
+	public boolean plainMiss() {
+		return miss.trim().toUpperCase().equals(word.trim().toUpperCase());
+	}
+
+}
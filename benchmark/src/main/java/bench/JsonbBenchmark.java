@@ -0,0 +1,61 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.ChatMessage;
+import model.ChatMessage.MsgType;
+import model.Score;
+import websocket.ChatMessageEncoder;
+
+/**
+ * JSON-B serialization of the chat messages, done once per message and shared
+ * by all the recipients, and of the scoreboard.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonbBenchmark {
+
+	@Param({ "4", "16", "64" })
+	public int players;
+
+	private ChatMessage message;
+	private List<Score> scoreboard;
+
+	@Setup
+	public void setUp() {
+		message = new ChatMessage(MsgType.MESSAGE, "gracz: czy to jest w?");
+		scoreboard = new ArrayList<>(players);
+		for (int i = 0; i < players; i++)
+			scoreboard.add(new Score("gracz" + i, i == 0, i * 10));
+	}
+
+	@Benchmark
+	public String chatMessage() {
+		return ChatMessageEncoder.toJson(message);
+	}
+
+	@Benchmark
+	public String scoreboard() {
+		return ChatMessageEncoder.toJson(new ChatMessage(MsgType.SCOREBOARD,
+				ChatMessageEncoder.contentToJson(scoreboard)));
+	}
+
+}
@@ -0,0 +1,60 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import service.LoginUtil;
+
+/**
+ * Token handling done on every login and every websocket connection, and
+ * password hashing done on every login. pbkdf2 is slow on purpose, it is here
+ * to see how many logins per second one core can take.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoginUtilBenchmark {
+
+	private static final String SECRET = "benchmark-secret";
+	private static final String OWNERS = "Piotr Koodziejski, Maciej Szabaa";
+	private static final long EXP_TIME = 3_600_000L;
+
+	private LoginUtil loginUtil = LoginUtil.getInstance();
+	private String token;
+	private byte[] salt;
+
+	@Setup
+	public void setUp() {
+		token = loginUtil.createJwt("gracz", SECRET, EXP_TIME, OWNERS);
+		salt = loginUtil.salt();
+	}
+
+	@Benchmark
+	public String createJwt() {
+		return loginUtil.createJwt("gracz", SECRET, EXP_TIME, OWNERS);
+	}
+
+	@Benchmark
+	public boolean verifyJwt() {
+		return loginUtil.verifyJwt(token, SECRET, OWNERS);
+	}
+
+	@Benchmark
+	public byte[] pbkdf2() {
+		return loginUtil.pbkdf2("tajne haso", salt);
+	}
+
+}
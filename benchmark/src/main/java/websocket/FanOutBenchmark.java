@@ -0,0 +1,128 @@
+package websocket;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.Polyline;
+import service.StrokeCodec;
+import websocket.Outbox.Frame;
+
+/**
+ * Relaying a batch of strokes to the other users of the room with
+ * {@link StrokeBatcher#fanOut}, the loop of {@link StrokeBatcher#flush()}: the
+ * batch is encoded once per format and queued in the outbox of every peer. Sessions are stubs whose sends complete
+ * at once, so the numbers are the cost of the server side only.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutBenchmark {
+
+	@Param({ "8", "64" })
+	public int peers;
+
+	@Param({ "true", "false" })
+	public boolean binary;
+
+	@Param({ "16" })
+	public int polylines;
+
+	private StrokeCodec strokeCodec = StrokeCodec.getInstance();
+	private Broadcaster broadcaster;
+	private List<Session> sessions;
+	private Session sender;
+	private List<Polyline> batch;
+
+	@Setup
+	public void setUp() {
+		broadcaster = new Broadcaster(SlowConsumerPolicy.DROP_OLDEST, 256);
+		sessions = new ArrayList<>(peers + 1);
+		for (int i = 0; i <= peers; i++) {
+			Session session = stubSession("session" + i);
+			session.getUserProperties().put(DrawWebsocket.BINARY_FORMAT, binary);
+			broadcaster.open(session);
+			sessions.add(session);
+		}
+		sender = sessions.get(0);
+
+		batch = new ArrayList<>(polylines);
+		for (int i = 0; i < polylines; i++)
+			batch.add(new Polyline(i % 8, new int[] { i * 100, i * 50, i * 100 + 40, i * 50 + 30 }));
+	}
+
+	@Benchmark
+	public int relay() {
+		return StrokeBatcher.fanOut(batch, sessions, sender, broadcaster, strokeCodec);
+	}
+
+	@Benchmark
+	public void broadcastText() {
+		broadcaster.broadcast(sessions, sender, Frame.text("{\"msgType\":\"MESSAGE\",\"msgContent\":\"gracz: kot\"}"));
+	}
+
+	/**
+	 * @param id session id
+	 * @return open session whose asynchronous sends complete immediately
+	 */
+	private static Session stubSession(String id) {
+		Map<String, Object> userProperties = new HashMap<>();
+		RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+				FanOutBenchmark.class.getClassLoader(), new Class<?>[] { RemoteEndpoint.Async.class },
+				(proxy, method, args) -> {
+					if (args != null && args.length == 2 && args[1] instanceof SendHandler) {
+						// Consume the view of the shared buffer like the container would
+						if (args[0] instanceof ByteBuffer)
+							((ByteBuffer) args[0]).position(((ByteBuffer) args[0]).limit());
+						((SendHandler) args[1]).onResult(new SendResult());
+					}
+					return null;
+				});
+		return (Session) Proxy.newProxyInstance(FanOutBenchmark.class.getClassLoader(), new Class<?>[] { Session.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getId":
+						return id;
+					case "isOpen":
+						return true;
+					case "getUserProperties":
+						return userProperties;
+					case "getAsyncRemote":
+						return remote;
+					case "equals":
+						return proxy == args[0];
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "toString":
+						return id;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+}
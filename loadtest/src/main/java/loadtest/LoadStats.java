@@ -0,0 +1,145 @@
+package loadtest;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.LongAdder;
+
+import metrics.Histogram;
+
+/**
+ * Results of the load test. Latencies are recorded in nanoseconds into the
+ * same histograms the server uses for its metrics, quantiles are accurate to
+ * 12.5%. Stroke and guess latencies are recorded only during the measurement,
+ * not while the users are still connecting.
+ */
+public class LoadStats {
+
+	/** Login, both websockets and the first scoreboard of a user */
+	private final Histogram connectionSetup = new Histogram();
+	/** Login request only */
+	private final Histogram login = new Histogram();
+	/** Stroke sent by the drawing user until received by another user */
+	private final Histogram strokeLatency = new Histogram();
+	/** Right answer sent until the scoreboard received by the winner */
+	private final Histogram guessToScoreboard = new Histogram();
+
+	private final LongAdder connected = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder disconnected = new LongAdder();
+	private final LongAdder strokesSent = new LongAdder();
+	private final LongAdder strokesReceived = new LongAdder();
+	private final LongAdder chatSent = new LongAdder();
+	private final LongAdder chatReceived = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+
+	private volatile boolean measuring;
+	// Counters at the start of the measurement, throughput is computed from there
+	private long strokesSentBefore;
+	private long strokesReceivedBefore;
+	private long chatReceivedBefore;
+
+	/**
+	 * Starts recording of stroke and guess latencies.
+	 */
+	public void startMeasurement() {
+		strokesSentBefore = strokesSent.sum();
+		strokesReceivedBefore = strokesReceived.sum();
+		chatReceivedBefore = chatReceived.sum();
+		measuring = true;
+	}
+
+	public boolean isMeasuring() {
+		return measuring;
+	}
+
+	void connected(long startNanos) {
+		connectionSetup.recordSince(startNanos);
+		connected.increment();
+	}
+
+	void loggedIn(long startNanos) {
+		login.recordSince(startNanos);
+	}
+
+	void failed() {
+		failed.increment();
+	}
+
+	void disconnected() {
+		disconnected.increment();
+	}
+
+	void strokeSent() {
+		strokesSent.increment();
+	}
+
+	void strokeReceived(long latencyNanos) {
+		strokesReceived.increment();
+		if (measuring)
+			strokeLatency.record(latencyNanos);
+	}
+
+	void chatSent() {
+		chatSent.increment();
+	}
+
+	void chatReceived() {
+		chatReceived.increment();
+	}
+
+	void guessScored(long latencyNanos) {
+		if (measuring)
+			guessToScoreboard.record(latencyNanos);
+	}
+
+	void error() {
+		errors.increment();
+	}
+
+	public long getConnected() {
+		return connected.sum();
+	}
+
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	/**
+	 * @return one line summary printed while the test is running
+	 */
+	public String progress() {
+		return String.format("connected %d, failed %d, disconnected %d, strokes sent %d received %d, "
+				+ "chat sent %d received %d, errors %d", connected.sum(), failed.sum(), disconnected.sum(),
+				strokesSent.sum(), strokesReceived.sum(), chatSent.sum(), chatReceived.sum(), errors.sum());
+	}
+
+	/**
+	 * Prints the final report.
+	 *
+	 * @param out            where to print
+	 * @param connectSeconds time in which all the users connected
+	 * @param measureSeconds length of the measurement
+	 */
+	public void report(PrintStream out, double connectSeconds, double measureSeconds) {
+		out.println();
+		out.printf("Connection setup: %d users in %.1f s (%.1f per second), %d failed%n", connected.sum(),
+				connectSeconds, connected.sum() / connectSeconds, failed.sum());
+		out.printf("Throughput: %.0f strokes/s sent, %.0f strokes/s received, %.0f chat messages/s received%n",
+				(strokesSent.sum() - strokesSentBefore) / measureSeconds,
+				(strokesReceived.sum() - strokesReceivedBefore) / measureSeconds,
+				(chatReceived.sum() - chatReceivedBefore) / measureSeconds);
+		out.printf("Disconnected %d, errors %d%n", disconnected.sum(), errors.sum());
+		out.println();
+		out.printf("%-22s %10s %10s %10s %10s %10s%n", "latency [ms]", "count", "p50", "p99", "p999", "max");
+		row(out, "connection setup", connectionSetup);
+		row(out, "login", login);
+		row(out, "stroke end-to-end", strokeLatency);
+		row(out, "guess to scoreboard", guessToScoreboard);
+	}
+
+	private static void row(PrintStream out, String name, Histogram histogram) {
+		out.printf("%-22s %10d %10.1f %10.1f %10.1f %10.1f%n", name, histogram.getCount(),
+				histogram.getQuantile(0.5) / 1e6, histogram.getQuantile(0.99) / 1e6,
+				histogram.getQuantile(0.999) / 1e6, histogram.getMax() / 1e6);
+	}
+
+}
@@ -0,0 +1,127 @@
+package loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.ContainerProvider;
+import javax.websocket.WebSocketContainer;
+
+/**
+ * Load generator playing the game against a running server. Users are split
+ * into rooms of the given size. In every room one user draws and the others
+ * chat and guess, the user who guesses the word draws next like in the real
+ * game. When all the users have connected, strokes and chat messages are sent
+ * for the given time, then the report is printed: connection setup rate and
+ * p50/p99/p999 latencies of the connection setup, the strokes and the winning
+ * guesses.
+ *
+ * Example: java -jar target/loadtest.jar --users 5000 --room-size 10
+ */
+public class LoadTest {
+
+	private static final long PROGRESS_SECONDS = 10;
+
+	private final LoadTestOptions options;
+	private final LoadStats stats = new LoadStats();
+	private final List<SimulatedRoom> rooms = new ArrayList<>();
+	private final List<SimulatedUser> users = new ArrayList<>();
+
+	public LoadTest(LoadTestOptions options) {
+		this.options = options;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		LoadTestOptions options;
+		try {
+			options = LoadTestOptions.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(LoadTestOptions.usage());
+			System.exit(2);
+			return;
+		}
+		new LoadTest(options).run();
+		System.exit(0);
+	}
+
+	/**
+	 * Connects the users, runs the game for the given time and prints the report.
+	 *
+	 * @throws InterruptedException when interrupted
+	 */
+	public void run() throws InterruptedException {
+		WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+		container.setDefaultMaxSessionIdleTimeout(0);
+		String run = Long.toString(System.currentTimeMillis() % 100_000, 36);
+		for (int r = 0; r < options.getRooms(); r++)
+			rooms.add(new SimulatedRoom(options.getPrefix() + run + "-" + r));
+		for (int i = 0; i < options.getUsers(); i++) {
+			SimulatedRoom room = rooms.get(i / options.getRoomSize());
+			users.add(new SimulatedUser(options.getPrefix() + run + "-" + i, room, options, stats, container));
+		}
+		System.out.printf("%d users in %d rooms, %s strokes at %d/s, chat every %.1f s%n", options.getUsers(),
+				options.getRooms(), options.isBinary() ? "binary" : "JSON", options.getStrokeRate(),
+				options.getChatInterval());
+
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(options.getThreads(), (r) -> {
+			Thread t = new Thread(r, "load-sender");
+			t.setDaemon(true);
+			return t;
+		});
+		scheduler.scheduleAtFixedRate(() -> System.out.println(stats.progress()), PROGRESS_SECONDS,
+				PROGRESS_SECONDS, TimeUnit.SECONDS);
+
+		// Users start playing as soon as they are connected
+		long periodNanos = TimeUnit.SECONDS.toNanos(1) / options.getStrokeRate();
+		for (SimulatedRoom room : rooms) {
+			scheduler.scheduleAtFixedRate(() -> {
+				SimulatedUser drawingUser = room.getDrawingUser();
+				if (drawingUser != null)
+					drawingUser.sendStroke();
+			}, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+		}
+		long chatNanos = (long) (options.getChatInterval() * TimeUnit.SECONDS.toNanos(1));
+		for (SimulatedUser user : users) {
+			scheduler.scheduleAtFixedRate(user::chat, ThreadLocalRandom.current().nextLong(chatNanos), chatNanos,
+					TimeUnit.NANOSECONDS);
+		}
+
+		long connectStart = System.nanoTime();
+		connectAll();
+		double connectSeconds = (System.nanoTime() - connectStart) / 1e9;
+		System.out.printf("Connected %d users in %.1f s, %d failed. Measuring for %d s...%n", stats.getConnected(),
+				connectSeconds, stats.getFailed(), options.getDuration());
+
+		long measureStart = System.nanoTime();
+		stats.startMeasurement();
+		TimeUnit.SECONDS.sleep(options.getDuration());
+		double measureSeconds = (System.nanoTime() - measureStart) / 1e9;
+
+		scheduler.shutdownNow();
+		stats.report(System.out, connectSeconds, measureSeconds);
+		users.forEach(SimulatedUser::close);
+	}
+
+	private void connectAll() throws InterruptedException {
+		ExecutorService connectors = Executors.newFixedThreadPool(options.getConnectConcurrency());
+		for (SimulatedUser user : users) {
+			connectors.execute(() -> {
+				try {
+					user.connect();
+				} catch (Exception e) {
+					stats.failed();
+					if (stats.getFailed() <= 10)
+						System.err.println("Connection failed: " + e);
+				}
+			});
+		}
+		connectors.shutdown();
+		connectors.awaitTermination(1, TimeUnit.DAYS);
+	}
+
+}
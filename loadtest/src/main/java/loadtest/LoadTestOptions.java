@@ -0,0 +1,175 @@
+package loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options of the load test, given as --name value pairs. Every
+ * option has a default, so the load test can be run without any.
+ */
+public class LoadTestOptions {
+
+	/** Base URL of the application, e.g. http://localhost:8080/KalamburyPro */
+	private String url = "http://localhost:8080/KalamburyPro";
+	/** Number of simulated users */
+	private int users = 100;
+	/** Number of users in one room */
+	private int roomSize = 10;
+	/** Number of users connecting at the same time */
+	private int connectConcurrency = 50;
+	/** Length of the measurement after all the users have connected, seconds */
+	private int duration = 60;
+	/** Strokes sent per second by the drawing user of every room */
+	private int strokeRate = 30;
+	/** Seconds between two chat messages of one user */
+	private double chatInterval = 10;
+	/** Fraction of chat messages being the right answer */
+	private double guessRatio = 0.05;
+	/** Format of the strokes, binary or json */
+	private boolean binary = true;
+	/** Password of all the simulated users */
+	private String password = "loadtest";
+	/** Prefix of the user and room names, users are created on the first login */
+	private String prefix = "lt";
+	/** Threads sending strokes and chat messages */
+	private int threads = Runtime.getRuntime().availableProcessors() * 2;
+
+	/**
+	 * @param args command line arguments
+	 * @return parsed options
+	 * @throws IllegalArgumentException when an option is unknown or its value is
+	 *                                  invalid
+	 */
+	public static LoadTestOptions parse(String[] args) throws IllegalArgumentException {
+		Map<String, String> values = new HashMap<>();
+		for (int i = 0; i < args.length; i += 2) {
+			if (!args[i].startsWith("--") || i + 1 == args.length)
+				throw new IllegalArgumentException("Expected --name value, got " + args[i]);
+			values.put(args[i].substring(2), args[i + 1]);
+		}
+
+		LoadTestOptions options = new LoadTestOptions();
+		try {
+			options.url = stripSlash(take(values, "url", options.url));
+			options.users = positive(take(values, "users", "" + options.users));
+			options.roomSize = positive(take(values, "room-size", "" + options.roomSize));
+			options.connectConcurrency = positive(
+					take(values, "connect-concurrency", "" + options.connectConcurrency));
+			options.duration = positive(take(values, "duration", "" + options.duration));
+			options.strokeRate = positive(take(values, "stroke-rate", "" + options.strokeRate));
+			options.chatInterval = Double.parseDouble(take(values, "chat-interval", "" + options.chatInterval));
+			options.guessRatio = Double.parseDouble(take(values, "guess-ratio", "" + options.guessRatio));
+			options.threads = positive(take(values, "threads", "" + options.threads));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number: " + e.getMessage());
+		}
+		String format = take(values, "format", "binary");
+		if (!format.equals("binary") && !format.equals("json"))
+			throw new IllegalArgumentException("Format must be binary or json.");
+		options.binary = format.equals("binary");
+		options.password = take(values, "password", options.password);
+		options.prefix = take(values, "prefix", options.prefix);
+
+		if (!values.isEmpty())
+			throw new IllegalArgumentException("Unknown options: " + values.keySet());
+		if (options.chatInterval <= 0 || options.guessRatio < 0 || options.guessRatio > 1)
+			throw new IllegalArgumentException("Chat interval must be positive, guess ratio from 0 to 1.");
+		return options;
+	}
+
+	/**
+	 * @return description of the options
+	 */
+	public static String usage() {
+		LoadTestOptions d = new LoadTestOptions();
+		return "Usage: java -jar loadtest.jar [--name value]...\n"
+				+ "  --url                 base URL of the application (" + d.url + ")\n"
+				+ "  --users               number of simulated users (" + d.users + ")\n"
+				+ "  --room-size           users in one room (" + d.roomSize + ")\n"
+				+ "  --connect-concurrency users connecting at the same time (" + d.connectConcurrency + ")\n"
+				+ "  --duration            seconds of measurement after connecting (" + d.duration + ")\n"
+				+ "  --stroke-rate         strokes per second of every drawing user (" + d.strokeRate + ")\n"
+				+ "  --chat-interval       seconds between chat messages of a user (" + d.chatInterval + ")\n"
+				+ "  --guess-ratio         fraction of chat messages being the answer (" + d.guessRatio + ")\n"
+				+ "  --format              stroke format, binary or json (binary)\n"
+				+ "  --password            password of the simulated users (" + d.password + ")\n"
+				+ "  --prefix              prefix of user and room names (" + d.prefix + ")\n"
+				+ "  --threads             threads sending messages (" + d.threads + ")";
+	}
+
+	private static String take(Map<String, String> values, String name, String defaultValue) {
+		String value = values.remove(name);
+		return value != null ? value : defaultValue;
+	}
+
+	private static int positive(String value) {
+		int parsed = Integer.parseInt(value);
+		if (parsed <= 0)
+			throw new IllegalArgumentException("Value must be positive: " + value);
+		return parsed;
+	}
+
+	private static String stripSlash(String url) {
+		return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return base URL with ws or wss scheme
+	 */
+	public String getWebsocketUrl() {
+		return url.replaceFirst("^http", "ws");
+	}
+
+	public int getUsers() {
+		return users;
+	}
+
+	public int getRoomSize() {
+		return roomSize;
+	}
+
+	public int getRooms() {
+		return (users + roomSize - 1) / roomSize;
+	}
+
+	public int getConnectConcurrency() {
+		return connectConcurrency;
+	}
+
+	public int getDuration() {
+		return duration;
+	}
+
+	public int getStrokeRate() {
+		return strokeRate;
+	}
+
+	public double getChatInterval() {
+		return chatInterval;
+	}
+
+	public double getGuessRatio() {
+		return guessRatio;
+	}
+
+	public boolean isBinary() {
+		return binary;
+	}
+
+	public String getPassword() {
+		return password;
+	}
+
+	public String getPrefix() {
+		return prefix;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+}
@@ -0,0 +1,123 @@
+package loadtest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import service.StrokeCodec;
+
+/**
+ * State of a room shared by its simulated users. Users of a room run in the
+ * same JVM, so the time a stroke was sent is kept here and the receivers
+ * compute the end-to-end latency themselves.
+ *
+ * Every stroke carries its sequence number in the end point, x = seq mod 4096
+ * and y = seq / 4096 mod 4096. Canvas size is {@link StrokeCodec#SCALE}, so
+ * the server passes coordinates unchanged in both formats. Consecutive strokes
+ * continue the same line like in drawing.js, the server joins them into one
+ * polyline whose every point but the first is the end of one stroke.
+ */
+public class SimulatedRoom {
+
+	/** Sequence numbers wrap at 4096 * 4096 */
+	static final int SEQ_MASK = 0xFFFFFF;
+	// Send times of the last strokes, long enough for any sensible latency
+	private static final int HISTORY = 1 << 16;
+
+	private final String name;
+	private final AtomicInteger sequence = new AtomicInteger();
+	private final AtomicLongArray sentAt = new AtomicLongArray(HISTORY);
+	private final AtomicReference<SimulatedUser> drawingUser = new AtomicReference<>();
+	private volatile String word;
+
+	public SimulatedRoom(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Allocates sequence number of the next stroke and remembers when it was
+	 * sent.
+	 *
+	 * @return sequence number of the stroke
+	 */
+	int nextStroke() {
+		int seq = sequence.incrementAndGet() & SEQ_MASK;
+		sentAt.set(seq & (HISTORY - 1), System.nanoTime());
+		return seq;
+	}
+
+	/**
+	 * @return sequence number of the last stroke sent
+	 */
+	int lastStroke() {
+		return sequence.get() & SEQ_MASK;
+	}
+
+	/**
+	 * @param seq sequence number of the stroke
+	 * @return System.nanoTime() when the stroke was sent
+	 */
+	long sentAt(int seq) {
+		return sentAt.get(seq & (HISTORY - 1));
+	}
+
+	static int x(int seq) {
+		return seq & 0xFFF;
+	}
+
+	static int y(int seq) {
+		return (seq >>> 12) & 0xFFF;
+	}
+
+	static int seq(int x, int y) {
+		return (y << 12) | x;
+	}
+
+	/**
+	 * @param seq      sequence number of the stroke received
+	 * @param lastSeen sequence number of the last stroke received before
+	 * @return true if the stroke is newer than the last one, sequence numbers
+	 *         wrap around
+	 */
+	static boolean isNewer(int seq, int lastSeen) {
+		int distance = (seq - lastSeen) & SEQ_MASK;
+		return distance != 0 && distance < SEQ_MASK / 2;
+	}
+
+	SimulatedUser getDrawingUser() {
+		return drawingUser.get();
+	}
+
+	/**
+	 * New round, given user draws the word.
+	 *
+	 * @param user drawing user
+	 * @param word word to draw
+	 */
+	void startRound(SimulatedUser user, String word) {
+		this.word = word;
+		drawingUser.set(user);
+	}
+
+	/**
+	 * Round is over, nobody draws until the next user gets the word.
+	 *
+	 * @param user user who was drawing
+	 */
+	void endRound(SimulatedUser user) {
+		// Next round might have already started
+		drawingUser.compareAndSet(user, null);
+	}
+
+	/**
+	 * @return word to guess, known because the drawing user is simulated too
+	 */
+	String getWord() {
+		return word;
+	}
+
+}
@@ -0,0 +1,359 @@
+package loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.CloseReason;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.Session;
+import javax.websocket.WebSocketContainer;
+
+import exception.InvalidStrokeException;
+import model.Cartesian;
+import model.ChatMessage;
+import model.ChatMessage.MsgType;
+import model.Credentials;
+import model.DrawingMessage;
+import model.Polyline;
+import service.StrokeCodec;
+import websocket.ChatMessageEncoder;
+
+/**
+ * One simulated player. Logs in through /rest/login, then opens /chat/{room}
+ * and /draw/{room} and sends the token as the first message of both, the same
+ * way the browser does. While drawing it sends strokes, otherwise it chats and
+ * now and then sends the right answer.
+ */
+public class SimulatedUser {
+
+	private static final Jsonb JSONB = JsonbBuilder.create();
+	private static final int MAX_LOGIN_ATTEMPTS = 10;
+	private static final int TIMEOUT_MILLIS = 30_000;
+	private static final String[] CHAT = { "kot", "moe dom?", "samochd", "to chyba drzewo", "rower",
+			"nie mam pojcia", "so", "zamek", "czy to jest statek?", "hahaha" };
+	private static final Cartesian CANVAS = new Cartesian(StrokeCodec.SCALE, StrokeCodec.SCALE);
+
+	private final String username;
+	private final SimulatedRoom room;
+	private final LoadTestOptions options;
+	private final LoadStats stats;
+	private final WebSocketContainer container;
+	private final StrokeCodec strokeCodec = StrokeCodec.getInstance();
+	private final int paletteIndex;
+	private final String color;
+
+	// Completed by the first scoreboard, the server has accepted the token
+	private final CompletableFuture<Void> joined = new CompletableFuture<>();
+	private volatile Session chatSession;
+	private volatile Session drawSession;
+	private volatile boolean closing;
+	private volatile int lastStrokeSeen;
+	private volatile long guessSentAt;
+	private volatile boolean guessWon;
+
+	public SimulatedUser(String username, SimulatedRoom room, LoadTestOptions options, LoadStats stats,
+			WebSocketContainer container) {
+		this.username = username;
+		this.room = room;
+		this.options = options;
+		this.stats = stats;
+		this.container = container;
+		this.paletteIndex = ThreadLocalRandom.current().nextInt(256);
+		this.color = strokeCodec.paletteColor(paletteIndex);
+	}
+
+	/**
+	 * Logs in and joins the room. Returns when the server has sent the first
+	 * scoreboard to the user.
+	 *
+	 * @throws IOException          when login or connection fails
+	 * @throws DeploymentException  when websocket cannot be opened
+	 * @throws InterruptedException when interrupted while waiting
+	 * @throws TimeoutException     when the server does not answer in time
+	 */
+	public void connect() throws IOException, DeploymentException, InterruptedException, TimeoutException {
+		long start = System.nanoTime();
+		String token = login();
+		stats.loggedIn(start);
+
+		ClientEndpointConfig config = ClientEndpointConfig.Builder.create().build();
+		String base = options.getWebsocketUrl();
+		chatSession = container.connectToServer(new ChatEndpoint(), config,
+				URI.create(base + "/chat/" + room.getName()));
+		send(chatSession, token);
+
+		drawSession = container.connectToServer(new DrawEndpoint(), config,
+				URI.create(base + "/draw/" + room.getName() + (options.isBinary() ? "?format=binary" : "")));
+		// Strokes drawn before joining come in the stroke log, they are not measured
+		lastStrokeSeen = room.lastStroke();
+		send(drawSession, token);
+
+		try {
+			joined.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			throw new IOException("Chat of " + username + " closed: " + e.getCause().getMessage());
+		}
+		stats.connected(start);
+	}
+
+	/**
+	 * Sends next stroke of the line, called only for the drawing user.
+	 */
+	public void sendStroke() {
+		int seq = room.nextStroke();
+		int previous = (seq - 1) & SimulatedRoom.SEQ_MASK;
+		try {
+			if (options.isBinary()) {
+				ByteBuffer frame = strokeCodec.encode(Collections.singletonList(new Polyline(paletteIndex,
+						new int[] { SimulatedRoom.x(previous), SimulatedRoom.y(previous), SimulatedRoom.x(seq),
+								SimulatedRoom.y(seq) })));
+				Session session = drawSession;
+				synchronized (session) {
+					session.getBasicRemote().sendBinary(frame);
+				}
+			} else {
+				DrawingMessage msg = new DrawingMessage(
+						new Cartesian(SimulatedRoom.x(previous), SimulatedRoom.y(previous)),
+						new Cartesian(SimulatedRoom.x(seq), SimulatedRoom.y(seq)), CANVAS, color);
+				send(drawSession, strokeCodec.toJson(msg));
+			}
+			stats.strokeSent();
+		} catch (IOException | RuntimeException e) {
+			stats.error();
+		}
+	}
+
+	/**
+	 * Sends a chat message, sometimes the right answer.
+	 */
+	public void chat() {
+		if (!joined.isDone() || closing)
+			return;
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		String word = room.getWord();
+		boolean guess = word != null && room.getDrawingUser() != this
+				&& random.nextDouble() < options.getGuessRatio();
+		String content = guess ? word : CHAT[random.nextInt(CHAT.length)];
+		if (guess)
+			guessSentAt = System.nanoTime();
+		try {
+			send(chatSession, ChatMessageEncoder.toJson(new ChatMessage(MsgType.MESSAGE, content)));
+			stats.chatSent();
+		} catch (IOException | RuntimeException e) {
+			stats.error();
+		}
+	}
+
+	/**
+	 * Closes both websockets.
+	 */
+	public void close() {
+		closing = true;
+		room.endRound(this);
+		for (Session session : new Session[] { chatSession, drawSession }) {
+			try {
+				if (session != null && session.isOpen())
+					session.close();
+			} catch (IOException e) {
+				// Closing anyway
+			}
+		}
+	}
+
+	private String login() throws IOException, InterruptedException {
+		Credentials credentials = new Credentials();
+		credentials.setUsername(username);
+		credentials.setPassword(options.getPassword());
+		byte[] body = JSONB.toJson(credentials).getBytes(StandardCharsets.UTF_8);
+
+		for (int attempt = 1;; attempt++) {
+			HttpURLConnection connection = (HttpURLConnection) new URL(options.getUrl() + "/rest/login")
+					.openConnection();
+			connection.setConnectTimeout(TIMEOUT_MILLIS);
+			connection.setReadTimeout(TIMEOUT_MILLIS);
+			connection.setRequestMethod("POST");
+			connection.setRequestProperty("Content-Type", "application/json");
+			connection.setDoOutput(true);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body);
+			}
+
+			int status = connection.getResponseCode();
+			if (status == HttpURLConnection.HTTP_UNAVAILABLE && attempt < MAX_LOGIN_ATTEMPTS) {
+				// Server hashes too many passwords at once, come back later as asked
+				Thread.sleep(TimeUnit.SECONDS.toMillis(retryAfter(connection)));
+				continue;
+			}
+			if (status != HttpURLConnection.HTTP_OK)
+				throw new IOException("Login of " + username + " failed with HTTP " + status);
+			try (InputStream in = connection.getInputStream()) {
+				ByteArrayOutputStream token = new ByteArrayOutputStream(256);
+				byte[] buffer = new byte[256];
+				int read;
+				while ((read = in.read(buffer)) > 0)
+					token.write(buffer, 0, read);
+				return new String(token.toByteArray(), StandardCharsets.UTF_8).trim();
+			}
+		}
+	}
+
+	private static int retryAfter(HttpURLConnection connection) {
+		try {
+			return Math.max(1, Integer.parseInt(connection.getHeaderField("Retry-After")));
+		} catch (NumberFormatException e) {
+			return 1;
+		}
+	}
+
+	private static void send(Session session, String text) throws IOException {
+		synchronized (session) {
+			session.getBasicRemote().sendText(text);
+		}
+	}
+
+	private void onChatMessage(String text) {
+		ChatMessage msg;
+		MsgType type;
+		try {
+			msg = ChatMessageEncoder.fromJson(text);
+			type = MsgType.valueOf(msg.getMsgType());
+		} catch (RuntimeException e) {
+			stats.error();
+			return;
+		}
+
+		switch (type) {
+		case WORD_TO_GUESS:
+			room.startRound(this, msg.getMsgContent());
+			break;
+		case CLEAN_WORD_TO_GUESS:
+			room.endRound(this);
+			break;
+		case YOU_GUESSED_IT:
+			guessWon = true;
+			break;
+		case SCOREBOARD:
+			joined.complete(null);
+			// Scoreboard is sent at the end of handling the winning guess
+			if (guessWon) {
+				guessWon = false;
+				stats.guessScored(System.nanoTime() - guessSentAt);
+			}
+			break;
+		case MESSAGE:
+			stats.chatReceived();
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void onStrokes(ByteBuffer frame) {
+		try {
+			for (Polyline polyline : strokeCodec.decode(frame)) {
+				for (int i = 0; i < polyline.getPointCount(); i++)
+					onStrokePoint(polyline.getX(i), polyline.getY(i));
+			}
+		} catch (InvalidStrokeException e) {
+			stats.error();
+		}
+	}
+
+	private void onStrokes(String json) {
+		try {
+			DrawingMessage msg = JSONB.fromJson(json, DrawingMessage.class);
+			onStrokePoint((int) msg.getTo().getX(), (int) msg.getTo().getY());
+		} catch (RuntimeException e) {
+			stats.error();
+		}
+	}
+
+	/**
+	 * Every point but the first of a polyline is the end of a stroke, first
+	 * point has already been seen as the end of the previous one.
+	 */
+	private void onStrokePoint(int x, int y) {
+		int seq = SimulatedRoom.seq(x, y);
+		if (SimulatedRoom.isNewer(seq, lastStrokeSeen)) {
+			lastStrokeSeen = seq;
+			stats.strokeReceived(System.nanoTime() - room.sentAt(seq));
+		}
+	}
+
+	private void onClosed(CloseReason reason) {
+		room.endRound(this);
+		joined.completeExceptionally(new IOException(reason.getReasonPhrase()));
+		if (!closing)
+			stats.disconnected();
+	}
+
+	private class ChatEndpoint extends Endpoint {
+		@Override
+		public void onOpen(Session session, EndpointConfig config) {
+			session.addMessageHandler(new MessageHandler.Whole<String>() {
+				@Override
+				public void onMessage(String text) {
+					onChatMessage(text);
+				}
+			});
+		}
+
+		@Override
+		public void onClose(Session session, CloseReason reason) {
+			onClosed(reason);
+		}
+
+		@Override
+		public void onError(Session session, Throwable error) {
+			stats.error();
+		}
+	}
+
+	private class DrawEndpoint extends Endpoint {
+		@Override
+		public void onOpen(Session session, EndpointConfig config) {
+			session.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
+				@Override
+				public void onMessage(ByteBuffer frame) {
+					onStrokes(frame);
+				}
+			});
+			session.addMessageHandler(new MessageHandler.Whole<String>() {
+				@Override
+				public void onMessage(String json) {
+					onStrokes(json);
+				}
+			});
+		}
+
+		@Override
+		public void onClose(Session session, CloseReason reason) {
+			onClosed(reason);
+		}
+
+		@Override
+		public void onError(Session session, Throwable error) {
+			stats.error();
+		}
+	}
+
+}
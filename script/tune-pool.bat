@@ -0,0 +1,15 @@
+set ASADMIN="C:\programs\servers\payara5\bin"
+rem Connection pool behind jdbc/PostgreSQL data source
+set POOL=PostgreSQLPool
+cd %ASADMIN%
+rem Every database operation borrows its own connection, keep enough of them warm
+asadmin set resources.jdbc-connection-pool.%POOL%.steady-pool-size=8
+asadmin set resources.jdbc-connection-pool.%POOL%.max-pool-size=32
+asadmin set resources.jdbc-connection-pool.%POOL%.pool-resize-quantity=4
+asadmin set resources.jdbc-connection-pool.%POOL%.max-wait-time-in-millis=5000
+asadmin set resources.jdbc-connection-pool.%POOL%.idle-timeout-in-seconds=300
+asadmin set resources.jdbc-connection-pool.%POOL%.statement-cache-size=64
+asadmin set resources.jdbc-connection-pool.%POOL%.is-connection-validation-required=true
+asadmin set resources.jdbc-connection-pool.%POOL%.connection-validation-method=meta-data
+asadmin set resources.jdbc-connection-pool.%POOL%.fail-all-connections=true
+pause
\ No newline at end of file
@@ -44,4 +44,54 @@ insert into public.słownik_aplikacji (klucz, wartość)
 values ('NUM_OF_RETRY', '5');
 
 insert into public.słownik_aplikacji (klucz, wartość)
-values ('RETRY_FREQ_IN_MILLIS', '1000');
\ No newline at end of file
+values ('RETRY_FREQ_IN_MILLIS', '1000');
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('SLOW_CONSUMER_POLICY', 'DROP_OLDEST');
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('OUTBOX_CAPACITY', '256');
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('STROKE_FLUSH_INTERVAL_IN_MILLIS', '16');
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('STROKE_BATCH_SIZE', '512');
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('STROKE_LOG_SIZE', '65536');
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('DICTIONARY_RELOAD_INTERVAL_IN_MILLIS', '60000');
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('WORD_RELOAD_INTERVAL_IN_MILLIS', '300000');
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('HASHING_THREADS', '0');
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('HASHING_QUEUE_SIZE', '32');
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('HASHING_RETRY_AFTER_IN_SECONDS', '1');
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('CREDENTIAL_CACHE_TTL_IN_MILLIS', '60000');
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('CREDENTIAL_CACHE_SIZE', '1024');
+
+-- Logowanie jednym zapytaniem: unikalna nazwa użytkownika i indeks złączenia z hasłami
+alter table public.użytkownicy add constraint użytkownicy_nazwa_key unique (nazwa);
+
+create index if not exists hasła_user_idu_idx on public.hasła (user_idu);
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('SCORE_FLUSH_INTERVAL_IN_MILLIS', '5000');
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('LOG_LEVEL', 'INFO');
+
+insert into public.słownik_aplikacji (klucz, wartość)
+values ('LOG_SAMPLE_RATE', '100');
\ No newline at end of file
@@ -1,42 +1,131 @@
 package db;
 
-import javax.persistence.NoResultException;
-import javax.persistence.NonUniqueResultException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import exception.GameIntegrityViolationException;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import model.AppDictionary;
+import service.Log;
 
 /**
  * This class is responsible for interacting with table containing app
- * constances in database.
+ * constances in database. The whole table is loaded into an immutable
+ * {@link DictionarySnapshot} and reloaded periodically, so reading a constant
+ * does not query the database. Reloaded snapshot replaces the previous one
+ * atomically, failed reload keeps the previous one.
  * 
  * @author Piotr Koodziejski
  */
 public class AppDictionaryService implements AutoCloseable {
 
+	private Log log = Log.getLog(AppDictionaryService.class);
 	private Database db = Database.getInstance();
+	private MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+	private final AtomicReference<DictionarySnapshot> snapshot = new AtomicReference<>();
+	private final ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor((r) -> {
+		Thread t = new Thread(r, "app-dictionary-reload");
+		t.setDaemon(true);
+		return t;
+	});
+
+	// Reload metrics
+	private final AtomicLong reloadCount = new AtomicLong();
+	private final AtomicLong reloadFailures = new AtomicLong();
+	private final Histogram reloadTime = metrics.timer("kalambury_dictionary_reload_seconds",
+			"Time of reloading the dictionary, failed reloads included.");
 
 	private static AppDictionaryService instance;
 
 	private AppDictionaryService() {
+		metrics.counter("kalambury_dictionary_reloads_total", "Successful reloads of the dictionary.",
+				this::getReloadCount);
+		metrics.counter("kalambury_dictionary_reload_failures_total", "Failed reloads of the dictionary.",
+				this::getReloadFailures);
 	}
 
 	/**
 	 * Implementation of the singleton pattern. Creates AppDictionaryService object.
+	 * Loads the dictionary and schedules its reloading.
 	 * 
 	 * @return instance of AppDictionaryService
 	 */
-	public static AppDictionaryService getInstance() {
-		if (instance == null)
+	public static synchronized AppDictionaryService getInstance() {
+		if (instance == null) {
 			instance = new AppDictionaryService();
+			instance.scheduleReload();
+		}
 		return instance;
 	}
 
+	/**
+	 * @return current snapshot of the dictionary, loaded from db on first use
+	 * @throws GameIntegrityViolationException when dictionary cannot be loaded
+	 */
+	public DictionarySnapshot snapshot() throws GameIntegrityViolationException {
+		DictionarySnapshot current = snapshot.get();
+		if (current == null)
+			current = reload();
+		return current;
+	}
+
+	/**
+	 * Loads the whole dictionary table and replaces current snapshot.
+	 * 
+	 * @return new snapshot
+	 * @throws GameIntegrityViolationException key is not unique or value has a
+	 *                                         wrong type
+	 */
+	public DictionarySnapshot reload() throws GameIntegrityViolationException {
+		long start = System.nanoTime();
+		try {
+			Map<String, String> values = new HashMap<>();
+			for (AppDictionary entry : db.read("AppDictionaryService.reload", (em) -> em
+					.createQuery("SELECT dic FROM AppDictionary dic", AppDictionary.class).getResultList())) {
+				if (values.containsKey(entry.getKey()))
+					throw new GameIntegrityViolationException("Key is not unique in the dictionary!");
+				values.put(entry.getKey(), entry.getValue());
+			}
+			DictionarySnapshot loaded = new DictionarySnapshot(values);
+			snapshot.set(loaded);
+			Log.configure(loaded.getLogLevel(), loaded.getLogSampleRate());
+			reloadCount.incrementAndGet();
+			return loaded;
+		} catch (RuntimeException e) {
+			reloadFailures.incrementAndGet();
+			throw e;
+		} finally {
+			reloadTime.recordSince(start);
+		}
+	}
+
+	/**
+	 * @return number of successful reloads
+	 */
+	public long getReloadCount() {
+		return reloadCount.get();
+	}
+
+	/**
+	 * @return number of failed reloads
+	 */
+	public long getReloadFailures() {
+		return reloadFailures.get();
+	}
+
 	/**
 	 * @return secret to sign JWT
 	 * @throws GameIntegrityViolationException key does not exist or is not unique
 	 */
 	public String getSecret() throws GameIntegrityViolationException {
-		return getValueForKey("SECRET");
+		return snapshot().getSecret();
 	}
 
 	/**
@@ -44,66 +133,102 @@ public class AppDictionaryService implements AutoCloseable {
 	 * @throws GameIntegrityViolationException key does not exist or is not unique
 	 */
 	public String getOwners() throws GameIntegrityViolationException {
-		return getValueForKey("OWNERS");
+		return snapshot().getOwners();
 	}
 
 	/**
-	 * @return expiration time of a JWT in milliseconds
+	 * @return expiration time in milliseconds
 	 * @throws GameIntegrityViolationException key does not exist or is not unique
 	 */
 	public long getExpirationTime() throws GameIntegrityViolationException {
-		try {
-			return Long.parseLong(getValueForKey("EXP_TIME_MILLIS"));
-		} catch (NumberFormatException e) {
-			throw new GameIntegrityViolationException("Expiration time is not of type long. Error in db.", e);
-		}
+		return snapshot().getExpirationTime();
 	}
 
 	/**
-	 * @return number of retries
-	 * @throws GameIntegrityViolationException key does not exist or is not unique,
-	 *                                         also when value is not an integer
+	 * @return name of the policy applied to websocket clients which do not keep up
+	 *         with sent messages, DROP_OLDEST if not set
+	 * @throws GameIntegrityViolationException key is not unique
 	 */
-	public int getNumberOfRetries() throws GameIntegrityViolationException {
-		try {
-			return Integer.parseInt(getValueForKey("NUM_OF_RETRY"));
-		} catch (NumberFormatException e) {
-			throw new GameIntegrityViolationException("Number of retries is not an integer. Error in db.", e);
-		}
+	public String getSlowConsumerPolicy() throws GameIntegrityViolationException {
+		return snapshot().getSlowConsumerPolicy();
 	}
 
 	/**
-	 * @return retry frequency in milliseconds
-	 * @throws GameIntegrityViolationException key does not exist or is not unique
+	 * @return maximal number of messages queued for a single websocket client, 256
+	 *         if not set
+	 * @throws GameIntegrityViolationException key is not unique, also when value
+	 *                                         is not an integer
 	 */
-	public int getRetryFrequency() throws GameIntegrityViolationException {
-		try {
-			return Integer.parseInt(getValueForKey("RETRY_FREQ_IN_MILLIS"));
-		} catch (NumberFormatException e) {
-			throw new GameIntegrityViolationException("Retry frequency is not an integer. Error in db.", e);
-		}
+	public int getOutboxCapacity() throws GameIntegrityViolationException {
+		return snapshot().getOutboxCapacity();
 	}
 
 	/**
-	 * 
-	 * @param key key in dictionary table
-	 * @return value for given key in dictionary table
-	 * @throws GameIntegrityViolationException key does not exist or is not unique
+	 * @return how long strokes of the drawing user are collected before they are
+	 *         sent to the others, 0 sends every stroke at once, 16 if not set
+	 * @throws GameIntegrityViolationException key is not unique, also when value
+	 *                                         is not an integer
+	 */
+	public int getStrokeFlushInterval() throws GameIntegrityViolationException {
+		return snapshot().getStrokeFlushInterval();
+	}
+
+	/**
+	 * @return maximal number of points collected before strokes are sent without
+	 *         waiting for the flush interval, 512 if not set
+	 * @throws GameIntegrityViolationException key is not unique, also when value
+	 *                                         is not an integer
 	 */
-	private String getValueForKey(String key) throws GameIntegrityViolationException {
+	public int getStrokeBatchSize() throws GameIntegrityViolationException {
+		return snapshot().getStrokeBatchSize();
+	}
+
+	/**
+	 * @return maximal number of points of the drawing kept in memory for users
+	 *         joining in the middle of the round, per room, 65536 if not set
+	 * @throws GameIntegrityViolationException key is not unique, also when value
+	 *                                         is not an integer
+	 */
+	public int getStrokeLogSize() throws GameIntegrityViolationException {
+		return snapshot().getStrokeLogSize();
+	}
+
+	/**
+	 * Schedules reloading with the interval from the dictionary itself. Change of
+	 * the interval takes effect after restart.
+	 */
+	private void scheduleReload() {
+		int interval;
 		try {
-			return db.em().createQuery("SELECT dic.value FROM AppDictionary dic WHERE dic.key = :key", String.class)
-					.setParameter("key", key).getSingleResult();
-		} catch (NoResultException e) {
-			throw new GameIntegrityViolationException("Key does not exist in the dictionary!", e);
-		} catch (NonUniqueResultException e) {
-			throw new GameIntegrityViolationException("Key is not unique in the dictionary!", e);
+			interval = snapshot().getReloadInterval();
+		} catch (RuntimeException e) {
+			log.error("Dictionary cannot be loaded.", e);
+			return;
 		}
+		if (interval <= 0)
+			return;
+		reloader.scheduleWithFixedDelay(() -> {
+			try {
+				reload();
+			} catch (RuntimeException e) {
+				log.error("Reload failed, keeping previous dictionary.", e);
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
 	}
 
 	@Override
 	public void close() throws Exception {
+		reloader.shutdownNow();
 		db.close();
 	}
 
+	/**
+	 * Stops reloading of the instance if it has been created, used on shutdown.
+	 * Database is closed separately.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null)
+			instance.reloader.shutdownNow();
+	}
+
 }
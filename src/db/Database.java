@@ -1,20 +1,40 @@
 package db;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
 import javax.persistence.Persistence;
 
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import service.Log;
+
 /**
- * This is a singleton class initializing EntityManager. It is meant to be
- * injected whenever interaction with database is needed.
+ * This is a singleton class initializing persistence layer. It is meant to be
+ * injected whenever interaction with database is needed. EntityManager is not
+ * thread-safe, so it is never shared: every operation gets its own one from
+ * the factory and closes it when done. Connections come from the container's
+ * pool of jdbc/PostgreSQL data source (see script/tune-pool.bat), unless
+ * javax.persistence.jdbc.url system property is set, e.g. by the standalone
+ * server, then EclipseLink connects to the given database by itself.
  * 
  * @author Maciej Szabaa
  *
  */
 public class Database implements AutoCloseable {
 
+	private static final String LOGGING_LEVEL = "eclipselink.logging.level";
+	private static final String NON_JTA_DATA_SOURCE = "javax.persistence.nonJtaDataSource";
+	private static final String JDBC = "javax.persistence.jdbc.";
+
+	private Log log = Log.getLog(Database.class);
+	private MetricsRegistry metrics = MetricsRegistry.getInstance();
 	private EntityManagerFactory emf;
-	private EntityManager em;
 
 	private static Database instance;
 
@@ -27,7 +47,7 @@ public class Database implements AutoCloseable {
 	 * 
 	 * @return instance of Database
 	 */
-	public static Database getInstance() {
+	public static synchronized Database getInstance() {
 		if (instance == null) {
 			instance = new Database();
 			instance.initPersistence();
@@ -36,36 +56,117 @@ public class Database implements AutoCloseable {
 	}
 
 	/**
-	 * Initializes persistence layer, creates EntityManager instance.
+	 * Initializes persistence layer, creates EntityManagerFactory instance.
+	 * EclipseLink log level set in persistence.xml may be overridden with
+	 * eclipselink.logging.level system property e.g. FINE for debugging queries.
+	 * javax.persistence.jdbc.* system properties replace the data source.
 	 */
 	private void initPersistence() {
+		Map<String, String> properties = new HashMap<>();
+		String logLevel = System.getProperty(LOGGING_LEVEL);
+		if (logLevel != null)
+			properties.put(LOGGING_LEVEL, logLevel);
+		if (System.getProperty(JDBC + "url") != null) {
+			// Empty name removes the data source given in persistence.xml
+			properties.put(NON_JTA_DATA_SOURCE, "");
+			for (String name : System.getProperties().stringPropertyNames()) {
+				if (name.startsWith(JDBC))
+					properties.put(name, System.getProperty(name));
+			}
+		}
 		try {
-			emf = Persistence.createEntityManagerFactory("postgres");
-			em = emf.createEntityManager();
+			emf = Persistence.createEntityManagerFactory("postgres", properties);
 		} catch (Exception e) {
-			System.err.println("Database init Entity Manager failed.");
-			e.printStackTrace();
+			log.error("Database init Entity Manager Factory failed.", e);
+		}
+	}
+
+	/**
+	 * Runs read-only operation without transaction. Returned entities are
+	 * detached.
+	 * 
+	 * @param <T>       result type
+	 * @param name      name of the operation in metrics, e.g.
+	 *                  UserService.getUserByUsername
+	 * @param operation operation on its own Entity Manager
+	 * @return result of the operation
+	 */
+	public <T> T read(String name, Function<EntityManager, T> operation) {
+		long start = System.nanoTime();
+		EntityManager em = emf.createEntityManager();
+		try {
+			return operation.apply(em);
+		} finally {
+			em.close();
+			timer(name).recordSince(start);
+		}
+	}
+
+	/**
+	 * Runs operation in a transaction. Transaction is rolled back when the
+	 * operation throws an exception.
+	 * 
+	 * @param <T>       result type
+	 * @param name      name of the operation in metrics
+	 * @param operation operation on its own Entity Manager
+	 * @return result of the operation
+	 */
+	public <T> T transaction(String name, Function<EntityManager, T> operation) {
+		long start = System.nanoTime();
+		EntityManager em = emf.createEntityManager();
+		EntityTransaction tx = em.getTransaction();
+		try {
+			tx.begin();
+			T result = operation.apply(em);
+			tx.commit();
+			return result;
+		} finally {
+			if (tx.isActive())
+				tx.rollback();
+			em.close();
+			timer(name).recordSince(start);
 		}
 	}
 
 	/**
-	 * @return instance of Entity Manager
+	 * Runs operation in a transaction. Transaction is rolled back when the
+	 * operation throws an exception.
+	 * 
+	 * @param name      name of the operation in metrics
+	 * @param operation operation on its own Entity Manager
 	 */
-	public EntityManager em() {
-		return em;
+	public void inTransaction(String name, Consumer<EntityManager> operation) {
+		transaction(name, (em) -> {
+			operation.accept(em);
+			return null;
+		});
+	}
+
+	private Histogram timer(String name) {
+		return metrics.timer("kalambury_db_query_seconds", "Time of database operations, connection included.",
+				"method", name);
 	}
 
 	/**
-	 * On Database close closes all objects used by Database.
+	 * On Database close closes all objects used by Database. Closing again does
+	 * nothing.
 	 */
 	@Override
 	public void close() {
 		try {
-			em.close();
-			emf.close();
+			if (emf.isOpen())
+				emf.close();
 		} catch (Exception e) {
-			System.err.println("Database close failed.");
+			log.error("Database close failed.", e);
 		}
 	}
 
+	/**
+	 * Closes the instance if it has been created, used on shutdown.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null)
+			instance.close();
+	}
+
 }
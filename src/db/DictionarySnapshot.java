@@ -0,0 +1,221 @@
+package db;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import exception.GameIntegrityViolationException;
+import service.Log;
+
+/**
+ * Immutable copy of the application dictionary with values already parsed.
+ * Optional keys get their default values, required keys which are missing are
+ * reported when they are read. Snapshot is never modified, a new one is
+ * created on reload.
+ */
+public class DictionarySnapshot {
+
+	private final Map<String, String> values;
+
+	private final String secret;
+	private final String owners;
+	private final Long expirationTime;
+	private final String slowConsumerPolicy;
+	private final int outboxCapacity;
+	private final int strokeFlushInterval;
+	private final int strokeBatchSize;
+	private final int strokeLogSize;
+	private final int reloadInterval;
+	private final int wordReloadInterval;
+	private final int hashingThreads;
+	private final int hashingQueueSize;
+	private final int hashingRetryAfter;
+	private final long credentialCacheTtl;
+	private final int credentialCacheSize;
+	private final int scoreFlushInterval;
+	private final Log.Level logLevel;
+	private final int logSampleRate;
+
+	/**
+	 * @param values keys and values from the dictionary table
+	 * @throws GameIntegrityViolationException when a value has a wrong type
+	 */
+	public DictionarySnapshot(Map<String, String> values) throws GameIntegrityViolationException {
+		this.values = Collections.unmodifiableMap(new HashMap<>(values));
+		secret = values.get("SECRET");
+		owners = values.get("OWNERS");
+		expirationTime = values.containsKey("EXP_TIME_MILLIS")
+				? parseLong("EXP_TIME_MILLIS", "Expiration time is not of type long.")
+				: null;
+		slowConsumerPolicy = values.getOrDefault("SLOW_CONSUMER_POLICY", "DROP_OLDEST");
+		outboxCapacity = parseInt("OUTBOX_CAPACITY", "256", 1, "Outbox capacity is not an integer.");
+		strokeFlushInterval = parseInt("STROKE_FLUSH_INTERVAL_IN_MILLIS", "16", 0,
+				"Stroke flush interval is not an integer.");
+		strokeBatchSize = parseInt("STROKE_BATCH_SIZE", "512", 1, "Stroke batch size is not an integer.");
+		strokeLogSize = parseInt("STROKE_LOG_SIZE", "65536", 1, "Stroke log size is not an integer.");
+		reloadInterval = parseInt("DICTIONARY_RELOAD_INTERVAL_IN_MILLIS", "60000",
+				"Dictionary reload interval is not an integer.");
+		wordReloadInterval = parseInt("WORD_RELOAD_INTERVAL_IN_MILLIS", "300000",
+				"Word reload interval is not an integer.");
+		hashingThreads = parseInt("HASHING_THREADS", "0", "Number of hashing threads is not an integer.");
+		hashingQueueSize = parseInt("HASHING_QUEUE_SIZE", "32", 1, "Hashing queue size is not an integer.");
+		hashingRetryAfter = parseInt("HASHING_RETRY_AFTER_IN_SECONDS", "1", 0,
+				"Hashing retry after is not an integer.");
+		credentialCacheTtl = parseInt("CREDENTIAL_CACHE_TTL_IN_MILLIS", "60000",
+				"Credential cache TTL is not an integer.");
+		credentialCacheSize = parseInt("CREDENTIAL_CACHE_SIZE", "1024", 0, "Credential cache size is not an integer.");
+		scoreFlushInterval = parseInt("SCORE_FLUSH_INTERVAL_IN_MILLIS", "5000", 1,
+				"Score flush interval is not an integer.");
+		try {
+			logLevel = Log.Level.valueOf(values.getOrDefault("LOG_LEVEL", "INFO"));
+		} catch (IllegalArgumentException e) {
+			throw new GameIntegrityViolationException("Log level is not one of " + Arrays.toString(Log.Level.values())
+					+ ". Error in db.", e);
+		}
+		logSampleRate = parseInt("LOG_SAMPLE_RATE", "100", 1, "Log sample rate is not an integer.");
+	}
+
+	public String getSecret() throws GameIntegrityViolationException {
+		return required("SECRET", secret);
+	}
+
+	public String getOwners() throws GameIntegrityViolationException {
+		return required("OWNERS", owners);
+	}
+
+	public long getExpirationTime() throws GameIntegrityViolationException {
+		return required("EXP_TIME_MILLIS", expirationTime);
+	}
+
+	public String getSlowConsumerPolicy() {
+		return slowConsumerPolicy;
+	}
+
+	public int getOutboxCapacity() {
+		return outboxCapacity;
+	}
+
+	public int getStrokeFlushInterval() {
+		return strokeFlushInterval;
+	}
+
+	public int getStrokeBatchSize() {
+		return strokeBatchSize;
+	}
+
+	public int getStrokeLogSize() {
+		return strokeLogSize;
+	}
+
+	/**
+	 * @return milliseconds between reloads of the dictionary, 0 or less disables
+	 *         reloading
+	 */
+	public int getReloadInterval() {
+		return reloadInterval;
+	}
+
+	/**
+	 * @return milliseconds between checks for new words, 0 or less disables
+	 *         checking
+	 */
+	public int getWordReloadInterval() {
+		return wordReloadInterval;
+	}
+
+	/**
+	 * @return number of password hashing threads, 0 or less means one per
+	 *         processor
+	 */
+	public int getHashingThreads() {
+		return hashingThreads;
+	}
+
+	/**
+	 * @return number of logins waiting for password hashing at most
+	 */
+	public int getHashingQueueSize() {
+		return hashingQueueSize;
+	}
+
+	/**
+	 * @return seconds after which login rejected due to overload may be retried
+	 */
+	public int getHashingRetryAfter() {
+		return hashingRetryAfter;
+	}
+
+	/**
+	 * @return how long successful login is remembered in milliseconds, 0 or less
+	 *         disables remembering
+	 */
+	public long getCredentialCacheTtl() {
+		return credentialCacheTtl;
+	}
+
+	/**
+	 * @return number of remembered logins at most
+	 */
+	public int getCredentialCacheSize() {
+		return credentialCacheSize;
+	}
+
+	/**
+	 * @return milliseconds between saving scored points to the database
+	 */
+	public int getScoreFlushInterval() {
+		return scoreFlushInterval;
+	}
+
+	/**
+	 * @return lowest level of the messages written to the log, INFO if not set
+	 */
+	public Log.Level getLogLevel() {
+		return logLevel;
+	}
+
+	/**
+	 * @return one of how many events happening for every message is written to
+	 *         the log, 100 if not set
+	 */
+	public int getLogSampleRate() {
+		return logSampleRate;
+	}
+
+	private <T> T required(String key, T value) throws GameIntegrityViolationException {
+		if (value == null)
+			throw new GameIntegrityViolationException("Key " + key + " does not exist in the dictionary!");
+		return value;
+	}
+
+	private int parseInt(String key, String defaultValue, String error) throws GameIntegrityViolationException {
+		return parseInt(key, defaultValue, Integer.MIN_VALUE, error);
+	}
+
+	/**
+	 * Parses value which must not be less than min, e.g. 0 would stop the
+	 * scheduling of a task with such interval.
+	 */
+	private int parseInt(String key, String defaultValue, int min, String error)
+			throws GameIntegrityViolationException {
+		int value;
+		try {
+			value = Integer.parseInt(values.getOrDefault(key, defaultValue));
+		} catch (NumberFormatException e) {
+			throw new GameIntegrityViolationException(error + " Error in db.", e);
+		}
+		if (value < min)
+			throw new GameIntegrityViolationException(key + " must not be less than " + min + ". Error in db.");
+		return value;
+	}
+
+	private long parseLong(String key, String error) throws GameIntegrityViolationException {
+		try {
+			return Long.parseLong(values.get(key));
+		} catch (NumberFormatException e) {
+			throw new GameIntegrityViolationException(error + " Error in db.", e);
+		}
+	}
+
+}
@@ -33,12 +33,21 @@ public class PasswordService implements AutoCloseable {
 		return instance;
 	}
 
-	public Password getPasswordForUser(String username) {
+	/**
+	 * Selects password together with its user in one query.
+	 * 
+	 * @param username username
+	 * @return password with user or null if user has not been signed up
+	 * @throws GameIntegrityViolationException password is not unique
+	 */
+	public Password getPasswordWithUser(String username) throws GameIntegrityViolationException {
 		try {
-			return db.em().createQuery("SELECT p FROM Password p WHERE p.user.username = :username", Password.class)
-					.setParameter("username", username).getSingleResult();
+			return db.read("PasswordService.getPasswordWithUser", (em) -> em
+					.createQuery("SELECT p FROM Password p JOIN FETCH p.user u WHERE u.username = :username",
+							Password.class)
+					.setParameter("username", username).getSingleResult());
 		} catch (NoResultException e) {
-			throw new GameIntegrityViolationException("Password does not exist!", e);
+			return null;
 		} catch (NonUniqueResultException e) {
 			throw new GameIntegrityViolationException("Password is not unique!", e);
 		}
@@ -1,11 +1,18 @@
 package db;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.persistence.NoResultException;
 import javax.persistence.NonUniqueResultException;
+import javax.persistence.PersistenceException;
 
 import exception.GameIntegrityViolationException;
 import model.Password;
 import model.User;
+import service.CredentialCache;
 import service.LoginUtil;
 
 /**
@@ -18,6 +25,7 @@ import service.LoginUtil;
 public class UserService implements AutoCloseable {
 
 	private LoginUtil loginUtil = LoginUtil.getInstance();
+	private CredentialCache credentialCache = CredentialCache.getInstance();
 	private Database db;
 
 	private static UserService instance;
@@ -44,8 +52,9 @@ public class UserService implements AutoCloseable {
 	 */
 	public User getUserByUsername(String username) throws GameIntegrityViolationException {
 		try {
-			return db.em().createQuery("SELECT u from User u WHERE u.username = :username", User.class)
-					.setParameter("username", username).getSingleResult();
+			return db.read("UserService.getUserByUsername",
+					(em) -> em.createQuery("SELECT u from User u WHERE u.username = :username", User.class)
+					.setParameter("username", username).getSingleResult());
 		} catch (NoResultException e) {
 			throw new GameIntegrityViolationException("User has not been signed up! Cannot mark as active.", e);
 		} catch (NonUniqueResultException e) {
@@ -60,8 +69,9 @@ public class UserService implements AutoCloseable {
 	 */
 	public boolean userExistsInDb(String username) throws GameIntegrityViolationException {
 		try {
-			db.em().createQuery("SELECT u from User u WHERE u.username = :username", User.class)
-					.setParameter("username", username).getSingleResult();
+			db.read("UserService.userExistsInDb",
+					(em) -> em.createQuery("SELECT u from User u WHERE u.username = :username", User.class)
+					.setParameter("username", username).getSingleResult());
 			return true;
 		} catch (NoResultException e) {
 			return false;
@@ -70,39 +80,65 @@ public class UserService implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * Adds points to the users in one transaction. Users who scored the same
+	 * number of points are updated with one statement.
+	 * 
+	 * @param deltas user id -> number of points to be added
+	 */
+	public void addPoints(Map<Long, Long> deltas) {
+		Map<Long, List<Long>> usersByDelta = new HashMap<>();
+		deltas.forEach((userId, delta) -> usersByDelta.computeIfAbsent(delta, (d) -> new ArrayList<>()).add(userId));
+
+		db.inTransaction("UserService.addPoints", (em) -> {
+			usersByDelta.forEach((delta, userIds) -> em
+					.createQuery("UPDATE User u SET u.points = u.points + :delta WHERE u.id IN :ids")
+					.setParameter("delta", delta.intValue()).setParameter("ids", userIds).executeUpdate());
+		});
+	}
+
 	/**
 	 * Creates new account for given user. Saves username in a database. Generates
 	 * salt for given user and stores it in db. Hashes the password and stores it in
 	 * db.
 	 * 
+	 * Username is unique in db, when the same username is being signed up at the
+	 * same time only one of the accounts is created.
+	 * 
 	 * @param username username
 	 * @param password password
+	 * @return false if user with given username already exists
 	 * @throws GameIntegrityViolationException if pbkdf2 was implemented incorrectly
 	 */
-	public void createNewUser(String username, String password) throws GameIntegrityViolationException {
+	public boolean createNewUser(String username, String password) throws GameIntegrityViolationException {
 		byte[] salt = loginUtil.salt();
 		byte[] hash = loginUtil.pbkdf2(password, salt);
 
-		db.em().getTransaction().begin();
-
-		// Create User Entity
-		User newAccount = new User();
-		newAccount.setUsername(username);
-		newAccount.setPoints(0);
-
-		// Store User
-		db.em().persist(newAccount);
-
-		// Create Password Entity
-		Password pass = new Password();
-		pass.setHash(hash);
-		pass.setSalt(salt);
-		pass.setUser(newAccount);
-
-		// Store Password
-		db.em().persist(pass);
-
-		db.em().getTransaction().commit();
+		try {
+			db.inTransaction("UserService.createNewUser", (em) -> {
+				// Create User Entity
+				User newAccount = new User();
+				newAccount.setUsername(username);
+				newAccount.setPoints(0);
+
+				// Create Password Entity
+				Password pass = new Password();
+				pass.setHash(hash);
+				pass.setSalt(salt);
+				pass.setUser(newAccount);
+
+				// Store Password, User is stored with it
+				em.persist(pass);
+			});
+		} catch (PersistenceException e) {
+			// Unique username violated, somebody has just signed up with the same name
+			if (userExistsInDb(username))
+				return false;
+			throw e;
+		}
+		// Name could have been used by a removed account, forget its password
+		credentialCache.invalidate(username);
+		return true;
 	}
 
 	@Override
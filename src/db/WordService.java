@@ -1,20 +1,39 @@
 package db;
 
-import java.util.Random;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import exception.GameIntegrityViolationException;
 import model.Word;
+import service.GameUtil;
+import service.Log;
 
 /**
  * This class is responsible for interacting with table containing words to
- * guess in database.
+ * guess in database. All the words are kept in memory, so choosing a word does
+ * not query the database. New words are loaded periodically, only those with
+ * id greater than the last loaded one.
  * 
  * @author Maciej Szabaa
  *
  */
 public class WordService implements AutoCloseable {
 
+	private Log log = Log.getLog(WordService.class);
 	private Database db = Database.getInstance();
+	private AppDictionaryService dictService = AppDictionaryService.getInstance();
+
+	// Replaced as a whole on reload, never modified
+	private volatile String[] words = new String[0];
+	private long maxId;
+	private final ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor((r) -> {
+		Thread t = new Thread(r, "word-reload");
+		t.setDaemon(true);
+		return t;
+	});
 
 	private static WordService instance;
 
@@ -23,49 +42,97 @@ public class WordService implements AutoCloseable {
 	}
 
 	/**
-	 * Implementation of the singleton pattern. Creates WordService object.
+	 * Implementation of the singleton pattern. Creates WordService object. Loads
+	 * the words and schedules loading of new ones.
 	 * 
 	 * @return instance of WordService
 	 */
-	public static WordService getInstance() {
-		if (instance == null)
+	public static synchronized WordService getInstance() {
+		if (instance == null) {
 			instance = new WordService();
+			instance.scheduleReload();
+		}
 		return instance;
 	}
 
 	/**
+	 * @return all the words, array must not be modified
+	 * @throws GameIntegrityViolationException when words cannot be loaded
+	 */
+	public String[] getWords() throws GameIntegrityViolationException {
+		String[] current = words;
+		if (current.length == 0)
+			current = reload();
+		return current;
+	}
+
+	/**
+	 * Loads words added since the last reload.
 	 * 
-	 * @return random word from database
-	 * @throws GameIntegrityViolationException in case of error during word
-	 *                                         generation
+	 * @return all the words
+	 * @throws GameIntegrityViolationException when words cannot be loaded
 	 */
-	public String getRandomWord() throws GameIntegrityViolationException {
+	public synchronized String[] reload() throws GameIntegrityViolationException {
 		try {
-			// Min ID
-			Long minId = db.em().createQuery("SELECT MIN(w.id) FROM Word w", Long.class).getSingleResult();
-			// Max ID
-			Long maxId = db.em().createQuery("SELECT MAX(w.id) FROM Word w", Long.class).getSingleResult();
-
-			Word word = null;
-			int failCounter = 0;
-			int maxFailes = 10;
-			while (word == null && failCounter < maxFailes) {
-				Long randId = (long) (new Random().nextDouble() * (maxId - minId + 1)) + minId;
-				word = db.em().find(Word.class, randId);
-				System.out.println("[" + failCounter + "] next word...");
-				failCounter++;
-			}
-			if (word == null) {
-				throw new GameIntegrityViolationException("Was not able to get new word to guess!");
-			}
-			return word.getWord();
+			long loaded = maxId;
+			List<Word> added = db.read("WordService.reload", (em) -> em
+					.createQuery("SELECT w FROM Word w WHERE w.id > :maxId ORDER BY w.id", Word.class)
+					.setParameter("maxId", loaded).getResultList());
+			if (added.isEmpty())
+				return words;
+			String[] current = words;
+			String[] reloaded = append(current, added);
+			maxId = added.get(added.size() - 1).getId();
+			words = reloaded;
+			log.info("{} words loaded, {} in total.", reloaded.length - current.length, reloaded.length);
+			return reloaded;
 		} catch (Exception e) {
-			throw new GameIntegrityViolationException("WordService error during next word generation.");
+			throw new GameIntegrityViolationException("WordService error during loading words.", e);
+		}
+	}
+
+	/**
+	 * Null and blank words cannot be guessed, they are skipped.
+	 * 
+	 * @param words loaded words
+	 * @param added words to be added
+	 * @return new array with loaded and valid added words
+	 */
+	public static String[] append(String[] words, List<Word> added) {
+		String[] appended = Arrays.copyOf(words, words.length + added.size());
+		int length = words.length;
+		for (Word word : added) {
+			if (!GameUtil.getInstance().isWordInvalid(word.getWord()))
+				appended[length++] = word.getWord();
 		}
+		return length == appended.length ? appended : Arrays.copyOf(appended, length);
+	}
+
+	private void scheduleReload() {
+		int interval = dictService.snapshot().getWordReloadInterval();
+		if (interval <= 0)
+			return;
+		reloader.scheduleWithFixedDelay(() -> {
+			try {
+				reload();
+			} catch (RuntimeException e) {
+				log.error("Loading new words failed.", e);
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
 	}
 
 	@Override
 	public void close() throws Exception {
+		reloader.shutdownNow();
 		db.close();
 	}
+
+	/**
+	 * Stops reloading of the instance if it has been created, used on shutdown.
+	 * Database is closed separately.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null)
+			instance.reloader.shutdownNow();
+	}
 }
@@ -0,0 +1,18 @@
+package exception;
+
+/**
+ * Thrown to indicate that malformed drawing message has been received.
+ */
+public class InvalidStrokeException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InvalidStrokeException(String errorMessage, Throwable err) {
+		super(errorMessage, err);
+	}
+
+	public InvalidStrokeException(String errorMessage) {
+		super(errorMessage);
+	}
+
+}
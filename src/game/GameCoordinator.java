@@ -0,0 +1,98 @@
+package game;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import service.Log;
+
+/**
+ * Mailbox of game events of one room. Events are run one at a time in order of
+ * submission, so a room never handles two events at once while different rooms
+ * are handled in parallel. Game logic of a room needs no locks, joins, leaves
+ * and guesses simply happen one after another. Submitting an event never
+ * blocks, websocket threads hand the work over and return at once.
+ *
+ * Mailboxes are run on virtual threads when the runtime has them, on a shared
+ * pool of daemon threads otherwise.
+ */
+public class GameCoordinator {
+
+	// Maximal number of events handled in one go, other rooms get their turn
+	private static final int BATCH = 64;
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+	private static final ExecutorService EXECUTOR = createExecutor();
+
+	private Log log = Log.getLog(GameCoordinator.class);
+
+	private final Queue<Runnable> events = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	/**
+	 * Queues the event. It is run after all the events submitted before.
+	 *
+	 * @param event game event
+	 */
+	public void submit(Runnable event) {
+		events.add(event);
+		schedule();
+	}
+
+	/**
+	 * Lets running mailboxes finish and stops the threads, used on shutdown.
+	 * Events submitted afterwards are rejected.
+	 */
+	public static void shutdown() {
+		EXECUTOR.shutdown();
+		try {
+			EXECUTOR.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		EXECUTOR.shutdownNow();
+	}
+
+	/**
+	 * @return executor creating virtual thread per task if available (Java 21+),
+	 *         cached pool otherwise
+	 */
+	private static ExecutorService createExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Executors.newCachedThreadPool((r) -> {
+				Thread t = new Thread(r, "game-coordinator");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true))
+			EXECUTOR.execute(this::drain);
+	}
+
+	private void drain() {
+		try {
+			Runnable event;
+			for (int i = 0; i != BATCH && (event = events.poll()) != null; i++) {
+				try {
+					event.run();
+				} catch (RuntimeException e) {
+					log.error("Game event failed.", e);
+				}
+			}
+		} finally {
+			scheduled.set(false);
+		}
+		// Event submitted after the last poll, or batch limit reached
+		if (!events.isEmpty())
+			schedule();
+	}
+
+}
@@ -0,0 +1,46 @@
+package game;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+import db.AppDictionaryService;
+import db.Database;
+import db.WordService;
+import service.HashingExecutor;
+import service.Log;
+import websocket.Broadcaster;
+import websocket.StrokeBatcher;
+
+/**
+ * Saves the state of the game kept in memory when the application is
+ * undeployed or the server is stopped. Stops all the background threads, so
+ * they do not keep the classes of the undeployed application loaded.
+ */
+@WebListener
+public class GameLifecycleListener implements ServletContextListener {
+
+	private Log log = Log.getLog(GameLifecycleListener.class);
+
+	@Override
+	public void contextInitialized(ServletContextEvent sce) {
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent sce) {
+		// Game events may still score points and write the snapshot
+		GameCoordinator.shutdown();
+		log.info("Saving points...");
+		ScoreWriter.shutdown();
+		SnapshotWriter.shutdown();
+
+		StrokeBatcher.shutdown();
+		Broadcaster.shutdown();
+		HashingExecutor.shutdown();
+		WordService.shutdown();
+		AppDictionaryService.shutdown();
+		Database.shutdown();
+		Log.shutdown();
+	}
+
+}
@@ -0,0 +1,222 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import db.ActiveUserService;
+import db.UserService;
+import exception.GameIntegrityViolationException;
+import exception.InvalidWordException;
+import model.Score;
+import model.User;
+import service.GameUtil;
+import service.Log;
+
+/**
+ * Authoritative, in-memory state of the game played in one room. Holds active
+ * users, drawing user, current word and scores. Active users are keyed by chat
+ * session id.
+ *
+ * Database table containing active users is only a snapshot of this state. It
+ * is written asynchronously by {@link SnapshotWriter}, so checking the guesses
+ * never touches the database. Points are saved by {@link ScoreWriter}. Every
+ * {@link Room} owns one game state.
+ */
+public class GameState {
+
+	private Log log = Log.getLog(GameState.class);
+	private ActiveUserService activeUserService = ActiveUserService.getInstance();
+	private UserService userService = UserService.getInstance();
+	private SnapshotWriter snapshotWriter = SnapshotWriter.getInstance();
+	private ScoreWriter scoreWriter = ScoreWriter.getInstance();
+	private GameUtil gameUtil = GameUtil.getInstance();
+
+	private final String room;
+	private final ConcurrentMap<String, Player> players = new ConcurrentHashMap<>();
+	private final AtomicReference<Round> round = new AtomicReference<>(Round.NONE);
+
+	/**
+	 * @param room name of the room the game is played in
+	 */
+	GameState(String room) {
+		this.room = room;
+	}
+
+	/**
+	 * @param sessionId id of a websocket session
+	 * @return true if user with given session id is active
+	 */
+	public boolean isUserActive(String sessionId) {
+		return sessionId != null && players.containsKey(sessionId);
+	}
+
+	/**
+	 * Marks user as active. Reads user's points from database, it is the only
+	 * database round trip made by the game state.
+	 *
+	 * @param username      User to be set as active
+	 * @param chatSessionId User's session id
+	 * @throws GameIntegrityViolationException user does not exist, is not unique
+	 *                                         or is already active
+	 */
+	public void addActiveUser(String username, String chatSessionId) throws GameIntegrityViolationException {
+		// Points of a rejoining user may not have been saved yet
+		User user = scoreWriter.readWithPending(() -> userService.getUserByUsername(username));
+		Player player = new Player(chatSessionId, user.getId(), user.getUsername(), user.getPoints());
+
+		if (players.putIfAbsent(chatSessionId, player) != null)
+			throw new GameIntegrityViolationException("User is already active!");
+
+		snapshotWriter.write(() -> activeUserService.addActiveUser(username, chatSessionId, room));
+	}
+
+	/**
+	 * Removes user with given session id from active users. When drawing user is
+	 * removed, the round is over and there is no drawing user anymore.
+	 *
+	 * @param sessionId User's session id
+	 */
+	public void removeActiveUser(String sessionId) {
+		if (sessionId == null || players.remove(sessionId) == null) {
+			log.debug("removeActiveUser: user already removed");
+			return;
+		}
+		// Points of the leaving user should not wait for the periodic flush
+		scoreWriter.flushSoon();
+		Round current = round.get();
+		if (sessionId.equals(current.getDrawingSessionId()))
+			round.compareAndSet(current, Round.NONE);
+
+		snapshotWriter.write(() -> activeUserService.removeActiveUser(sessionId));
+	}
+
+	/**
+	 * @return number of active users
+	 */
+	public int getNumberOfActiveUsers() {
+		return players.size();
+	}
+
+	/**
+	 * @return true is drawing user exists, false otherwise
+	 */
+	public boolean doesDrawingUserExist() {
+		return round.get().hasDrawingUser();
+	}
+
+	/**
+	 * @return session id of currently drawing user
+	 * @throws GameIntegrityViolationException when there is no drawing user
+	 */
+	public String getDrawingSessionId() throws GameIntegrityViolationException {
+		Round current = round.get();
+		if (!current.hasDrawingUser())
+			throw new GameIntegrityViolationException("There is no drawing user!");
+		return current.getDrawingSessionId();
+	}
+
+	/**
+	 * Compares given word to the current word to guess.
+	 *
+	 * @param word to be compared with current word to guess
+	 * @return true if words are equal in canonical form, false otherwise
+	 * @throws GameIntegrityViolationException when there is no drawing user
+	 */
+	public boolean hasWordBeenGuessed(String word) throws GameIntegrityViolationException {
+		if (gameUtil.isWordInvalid(word))
+			return false;
+
+		Round current = round.get();
+		if (!current.hasDrawingUser())
+			throw new GameIntegrityViolationException("There is no drawing user!");
+
+		try {
+			return gameUtil.compareWords(word, current.getNormalizedWord());
+		} catch (InvalidWordException e) {
+			log.warn("hasWordBeenGuessed: word to guess is probably null or blank!");
+			return false;
+		}
+	}
+
+	/**
+	 * Adds given number of points to the active user with given session id.
+	 *
+	 * @param chatSessionId user session id to which add points
+	 * @param points        number of points to be added
+	 * @throws GameIntegrityViolationException when user is inactive
+	 */
+	public void addPointsToTheUser(String chatSessionId, int points) throws GameIntegrityViolationException {
+		if (points <= 0) {
+			log.warn("addPointsToTheUser: cannot add zero or less points!");
+			return;
+		}
+
+		Player player = players.get(chatSessionId);
+		if (player == null)
+			throw new GameIntegrityViolationException("Cannot add point to inactive user!");
+		player.addPoints(points);
+
+		scoreWriter.addPoints(player.getUserId(), points);
+	}
+
+	/**
+	 * @return session id of a random active user
+	 * @throws GameIntegrityViolationException when there are no active users
+	 */
+	public String getRandomActiveSessionId() throws GameIntegrityViolationException {
+		List<String> sessionIds = new ArrayList<>(players.keySet());
+		if (sessionIds.isEmpty())
+			throw new GameIntegrityViolationException("There are no active users!");
+		return sessionIds.get(ThreadLocalRandom.current().nextInt(sessionIds.size()));
+	}
+
+	/**
+	 * Starts new round if the current round is still the expected one. Drawing
+	 * user and word to guess are replaced at once with a single compare-and-set,
+	 * there is no moment without drawing user.
+	 *
+	 * @param previousDrawingSessionId session id of the drawing user of the round
+	 *                                 to be replaced, null if there should be no
+	 *                                 drawing user
+	 * @param chatSessionId            session id of user to be set as drawing
+	 * @param word                     new word to guess
+	 * @return false if the round has been changed by somebody else in the meantime
+	 * @throws GameIntegrityViolationException when either user is inactive or word
+	 *                                         is invalid
+	 */
+	public boolean startNextRound(String previousDrawingSessionId, String chatSessionId, String word)
+			throws GameIntegrityViolationException {
+		if (!isUserActive(chatSessionId))
+			throw new GameIntegrityViolationException("Cannot set inactive user as drawing!");
+
+		if (gameUtil.isWordInvalid(word))
+			throw new GameIntegrityViolationException("Cannot set invalid word!");
+
+		Round current = round.get();
+		if (!Objects.equals(current.getDrawingSessionId(), previousDrawingSessionId)
+				|| !round.compareAndSet(current, new Round(chatSessionId, word)))
+			return false;
+
+		snapshotWriter.write(() -> activeUserService.setDrawingUserAndNewWord(room, chatSessionId, word));
+		return true;
+	}
+
+	/**
+	 * Produces scoreboard for active users.
+	 *
+	 * @return list of active users and their points
+	 */
+	public List<Score> produceScoreboard() {
+		String drawingSessionId = round.get().getDrawingSessionId();
+		List<Score> scores = new ArrayList<>(players.size());
+		for (Player p : players.values()) {
+			scores.add(new Score(p.getUsername(), p.getChatSessionId().equals(drawingSessionId), p.getPoints()));
+		}
+		return scores;
+	}
+}
@@ -0,0 +1,47 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Active player held in memory by {@link GameState}. Player is identified by
+ * chat websocket session id.
+ */
+public class Player {
+
+	private final String chatSessionId;
+	private final long userId;
+	private final String username;
+	private final AtomicInteger points;
+
+	public Player(String chatSessionId, long userId, String username, int points) {
+		this.chatSessionId = chatSessionId;
+		this.userId = userId;
+		this.username = username;
+		this.points = new AtomicInteger(points);
+	}
+
+	public String getChatSessionId() {
+		return chatSessionId;
+	}
+
+	public long getUserId() {
+		return userId;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public int getPoints() {
+		return points.get();
+	}
+
+	/**
+	 * @param delta number of points to be added
+	 * @return points after the update
+	 */
+	public int addPoints(int delta) {
+		return points.addAndGet(delta);
+	}
+
+}
@@ -0,0 +1,80 @@
+package game;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.websocket.Session;
+
+/**
+ * Game room. Holds its own game state, drawing and websocket sessions of its
+ * members, so messages are broadcast only to the users playing in the same
+ * room. Sessions are kept in concurrent sets, joining or leaving does not copy
+ * the whole set and broadcasting iterates over it without locking.
+ */
+public class Room {
+
+	private final String name;
+	private final GameState gameState;
+	private final StrokeLog strokeLog;
+	private final WordDeck wordDeck = new WordDeck();
+	private final GameCoordinator coordinator = new GameCoordinator();
+	private final Set<Session> chatSessions = ConcurrentHashMap.newKeySet();
+	private final Set<Session> drawSessions = ConcurrentHashMap.newKeySet();
+
+	Room(String name, int strokeLogSize) {
+		this.name = name;
+		this.gameState = new GameState(name);
+		this.strokeLog = new StrokeLog(strokeLogSize);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public GameState getGameState() {
+		return gameState;
+	}
+
+	/**
+	 * @return strokes drawn since the canvas was cleaned
+	 */
+	public StrokeLog getStrokeLog() {
+		return strokeLog;
+	}
+
+	/**
+	 * @return words to guess in this room
+	 */
+	public WordDeck getWordDeck() {
+		return wordDeck;
+	}
+
+	/**
+	 * @return serialized queue of game events of this room
+	 */
+	public GameCoordinator getCoordinator() {
+		return coordinator;
+	}
+
+	/**
+	 * @return chat websocket sessions of room members
+	 */
+	public Set<Session> getChatSessions() {
+		return chatSessions;
+	}
+
+	/**
+	 * @return draw websocket sessions of room members
+	 */
+	public Set<Session> getDrawSessions() {
+		return drawSessions;
+	}
+
+	/**
+	 * @return true if nobody is connected to the room
+	 */
+	boolean isEmpty() {
+		return chatSessions.isEmpty() && drawSessions.isEmpty();
+	}
+
+}
@@ -0,0 +1,161 @@
+package game;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import javax.websocket.Session;
+
+import db.AppDictionaryService;
+import exception.GameIntegrityViolationException;
+import metrics.MetricsRegistry;
+
+/**
+ * Registry of game rooms. Room is created when the first user joins it and is
+ * removed when the last user leaves it. It is a singleton and is meant to be
+ * injected as a field i.e. private RoomRegistry roomRegistry =
+ * RoomRegistry.getInstance();
+ */
+public class RoomRegistry {
+
+	private static final Pattern ROOM_NAME = Pattern.compile("[\\p{L}\\p{N}_-]{1,32}");
+
+	private AppDictionaryService dictService = AppDictionaryService.getInstance();
+	private MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+	private final ConcurrentMap<String, Room> rooms = new ConcurrentHashMap<>();
+	private final int strokeLogSize;
+
+	private static RoomRegistry instance;
+
+	private RoomRegistry() {
+		strokeLogSize = dictService.getStrokeLogSize();
+		metrics.gauge("kalambury_rooms", "Rooms with at least one user.", this::getNumberOfRooms);
+		metrics.gauge("kalambury_sessions", "Open websocket sessions by endpoint.", "endpoint", "chat",
+				() -> countSessions(true));
+		metrics.gauge("kalambury_sessions", "Open websocket sessions by endpoint.", "endpoint", "draw",
+				() -> countSessions(false));
+	}
+
+	/**
+	 * Implementation of the singleton pattern. Creates RoomRegistry object.
+	 *
+	 * @return instance of RoomRegistry
+	 */
+	public static synchronized RoomRegistry getInstance() {
+		if (instance == null)
+			instance = new RoomRegistry();
+		return instance;
+	}
+
+	/**
+	 * @param name room name
+	 * @return true if name is null or contains characters other than letters,
+	 *         digits, '-' and '_' or is longer than 32 characters
+	 */
+	public boolean isRoomNameInvalid(String name) {
+		return name == null || !ROOM_NAME.matcher(name).matches();
+	}
+
+	/**
+	 * Adds chat session to the room. Creates the room if it does not exist.
+	 *
+	 * @param name    room name
+	 * @param session chat websocket session
+	 * @return room joined
+	 * @throws GameIntegrityViolationException when room name is invalid
+	 */
+	public Room joinChat(String name, Session session) throws GameIntegrityViolationException {
+		return join(name, session, null);
+	}
+
+	/**
+	 * Adds authenticated draw session to the room. Creates the room if it does
+	 * not exist. Session is added and onJoined is called under the lock of the
+	 * stroke log, so strokes flushed in the meantime are either in the log or
+	 * sent to the session, never both.
+	 *
+	 * @param name     room name
+	 * @param session  draw websocket session
+	 * @param onJoined called with the room joined, e.g. to send the stroke log
+	 * @return room joined
+	 * @throws GameIntegrityViolationException when room name is invalid
+	 */
+	public Room joinDraw(String name, Session session, Consumer<Room> onJoined)
+			throws GameIntegrityViolationException {
+		return join(name, session, onJoined);
+	}
+
+	/**
+	 * Removes chat session from the room. Removes the room if it is empty.
+	 *
+	 * @param room    room to be left
+	 * @param session chat websocket session
+	 */
+	public void leaveChat(Room room, Session session) {
+		leave(room, session, true);
+	}
+
+	/**
+	 * Removes draw session from the room. Removes the room if it is empty.
+	 *
+	 * @param room    room to be left
+	 * @param session draw websocket session
+	 */
+	public void leaveDraw(Room room, Session session) {
+		leave(room, session, false);
+	}
+
+	/**
+	 * @return number of existing rooms
+	 */
+	public int getNumberOfRooms() {
+		return rooms.size();
+	}
+
+	private long countSessions(boolean chat) {
+		long count = 0;
+		for (Room room : rooms.values())
+			count += chat ? room.getChatSessions().size() : room.getDrawSessions().size();
+		return count;
+	}
+
+	/**
+	 * @param onJoined null for chat session
+	 */
+	private Room join(String name, Session session, Consumer<Room> onJoined)
+			throws GameIntegrityViolationException {
+		if (isRoomNameInvalid(name))
+			throw new GameIntegrityViolationException("Invalid room name!");
+
+		// Room is created and joined atomically, so it cannot be removed in between
+		return rooms.compute(name, (key, room) -> {
+			if (room == null)
+				room = new Room(key, strokeLogSize);
+			if (onJoined == null) {
+				room.getChatSessions().add(session);
+			} else {
+				synchronized (room.getStrokeLog()) {
+					room.getDrawSessions().add(session);
+					onJoined.accept(room);
+				}
+			}
+			return room;
+		});
+	}
+
+	private void leave(Room room, Session session, boolean chat) {
+		if (room == null)
+			return;
+
+		rooms.computeIfPresent(room.getName(), (key, existing) -> {
+			if (chat)
+				existing.getChatSessions().remove(session);
+			else
+				existing.getDrawSessions().remove(session);
+			return existing.isEmpty() ? null : existing;
+		});
+	}
+
+}
@@ -0,0 +1,49 @@
+package game;
+
+import model.NormalizedWord;
+
+/**
+ * Immutable state of a single round: who is drawing and what word is being
+ * drawn. Replaced as a whole, so drawing user and word always change together.
+ */
+public class Round {
+
+	/**
+	 * Round without drawing user, i.e. game has not been started yet.
+	 */
+	public static final Round NONE = new Round(null, null);
+
+	private final String drawingSessionId;
+	private final String word;
+	// Normalized once per round, every chat message is compared with it
+	private final NormalizedWord normalizedWord;
+
+	public Round(String drawingSessionId, String word) {
+		this.drawingSessionId = drawingSessionId;
+		this.word = word;
+		this.normalizedWord = word == null ? null : new NormalizedWord(word);
+	}
+
+	public String getDrawingSessionId() {
+		return drawingSessionId;
+	}
+
+	public String getWord() {
+		return word;
+	}
+
+	/**
+	 * @return word to guess in canonical form
+	 */
+	public NormalizedWord getNormalizedWord() {
+		return normalizedWord;
+	}
+
+	/**
+	 * @return true if there is a drawing user in this round
+	 */
+	public boolean hasDrawingUser() {
+		return drawingSessionId != null;
+	}
+
+}
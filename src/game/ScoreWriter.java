@@ -0,0 +1,127 @@
+package game;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import db.AppDictionaryService;
+import db.UserService;
+import model.User;
+import service.Log;
+
+/**
+ * Write-behind of the points. Points scored by users are summed up in memory
+ * and saved to the database periodically, users who scored the same number of
+ * points since the last flush are updated with one statement. Guessing the
+ * word does not wait for the database. Points are also flushed when a user
+ * leaves the game and on shutdown. It is a singleton and is meant to be
+ * injected as a field i.e. private ScoreWriter scoreWriter =
+ * ScoreWriter.getInstance();
+ */
+public class ScoreWriter implements AutoCloseable {
+
+	private Log log = Log.getLog(ScoreWriter.class);
+	private AppDictionaryService dictService = AppDictionaryService.getInstance();
+	private UserService userService = UserService.getInstance();
+
+	// User id -> points not saved yet, users without such points are removed
+	private final ConcurrentMap<Long, Long> pending = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor((r) -> {
+		Thread t = new Thread(r, "score-flush");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private static ScoreWriter instance;
+
+	private ScoreWriter() {
+		int interval = dictService.snapshot().getScoreFlushInterval();
+		flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Implementation of the singleton pattern. Creates ScoreWriter object.
+	 *
+	 * @return instance of ScoreWriter
+	 */
+	public static synchronized ScoreWriter getInstance() {
+		if (instance == null)
+			instance = new ScoreWriter();
+		return instance;
+	}
+
+	/**
+	 * Remembers points to be saved.
+	 *
+	 * @param userId id of the user
+	 * @param points number of points scored
+	 */
+	public void addPoints(long userId, int points) {
+		pending.merge(userId, (long) points, Long::sum);
+	}
+
+	/**
+	 * Reads the user and adds the points not saved yet. Flush does not run in the
+	 * meantime, so points being saved are counted exactly once.
+	 *
+	 * @param read reads the user from the database, the user is not managed
+	 * @return user read with its pending points added
+	 */
+	public synchronized User readWithPending(Supplier<User> read) {
+		User user = read.get();
+		Long delta = pending.get(user.getId());
+		if (delta != null)
+			user.setPoints(user.getPoints() + delta.intValue());
+		return user;
+	}
+
+	/**
+	 * Saves pending points soon, without waiting for the next periodic flush.
+	 */
+	public void flushSoon() {
+		flusher.execute(this::flush);
+	}
+
+	/**
+	 * Saves all the pending points in one transaction. When saving fails, points
+	 * are kept and saved with the next flush.
+	 */
+	public synchronized void flush() {
+		Map<Long, Long> deltas = new HashMap<>(pending);
+		if (deltas.isEmpty())
+			return;
+		// Points added in the meantime stay pending, the entry is removed when none are left
+		deltas.forEach((userId, delta) -> pending.computeIfPresent(userId,
+				(id, points) -> points == delta.longValue() ? null : points - delta));
+
+		try {
+			userService.addPoints(deltas);
+		} catch (RuntimeException e) {
+			log.warn("Saving points failed, retrying with the next flush.", e);
+			deltas.forEach((userId, delta) -> pending.merge(userId, delta, Long::sum));
+		}
+	}
+
+	/**
+	 * Stops periodic flushing and saves pending points.
+	 */
+	@Override
+	public void close() {
+		flusher.shutdownNow();
+		flush();
+	}
+
+	/**
+	 * Closes the instance if it has been created, used on shutdown.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null)
+			instance.close();
+	}
+
+}
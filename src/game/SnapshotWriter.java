@@ -0,0 +1,85 @@
+package game;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import db.ActiveUserService;
+import service.Log;
+
+/**
+ * Writes snapshot of the in-memory game state to the active users table. All
+ * the rooms share one background thread, so writes are applied one by one in
+ * order of submission. It is a singleton and is meant to be injected as a field
+ * i.e. private SnapshotWriter snapshotWriter = SnapshotWriter.getInstance();
+ */
+public class SnapshotWriter implements AutoCloseable {
+
+	private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+	private Log log = Log.getLog(SnapshotWriter.class);
+	private ActiveUserService activeUserService = ActiveUserService.getInstance();
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor((r) -> {
+		Thread t = new Thread(r, "game-state-snapshot");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private static SnapshotWriter instance;
+
+	private SnapshotWriter() {
+		// Snapshot left by previous run is outdated
+		write(() -> activeUserService.removeAllActiveUsers());
+	}
+
+	/**
+	 * Implementation of the singleton pattern. Creates SnapshotWriter object.
+	 *
+	 * @return instance of SnapshotWriter
+	 */
+	public static synchronized SnapshotWriter getInstance() {
+		if (instance == null)
+			instance = new SnapshotWriter();
+		return instance;
+	}
+
+	/**
+	 * Queues write to the database snapshot.
+	 *
+	 * @param write database operation
+	 */
+	public void write(Runnable write) {
+		executor.execute(() -> {
+			try {
+				write.run();
+			} catch (RuntimeException e) {
+				log.error("Snapshot write failed.", e);
+			}
+		});
+	}
+
+	/**
+	 * On close of the object makes sure pending snapshot writes are applied.
+	 * Waits for them at most {@value #CLOSE_TIMEOUT_SECONDS} seconds.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+				log.warn("Snapshot writes not applied in {} s, dropping them.", CLOSE_TIMEOUT_SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Closes the instance if it has been created, used on shutdown.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null)
+			instance.close();
+	}
+}
@@ -0,0 +1,203 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.Polyline;
+
+/**
+ * Strokes drawn in the room since the canvas was cleaned, so users joining in
+ * the middle of the round can see the current drawing. Points are kept in
+ * primitive arrays, not as objects. When the log exceeds its budget of points
+ * it is compacted: polylines are simplified with growing tolerance and, if
+ * that is not enough, the oldest ones are forgotten.
+ *
+ * Methods are synchronized. Code which must not interleave with appending,
+ * e.g. sending the log to a new user, may synchronize on the log as well.
+ */
+public class StrokeLog {
+
+	private static final int INITIAL_CAPACITY = 256;
+	private static final int MAX_TOLERANCE = 64;
+
+	private final int maxPoints;
+
+	// Interleaved x, y of all the polylines
+	private int[] points = new int[2 * INITIAL_CAPACITY];
+	private int size;
+	// Index in points where polyline starts, its palette index and exact color
+	private int[] starts = new int[INITIAL_CAPACITY / 8];
+	private byte[] palette = new byte[INITIAL_CAPACITY / 8];
+	private int[] rgb = new int[INITIAL_CAPACITY / 8];
+	private int count;
+
+	/**
+	 * @param maxPoints number of points kept at most
+	 */
+	public StrokeLog(int maxPoints) {
+		this.maxPoints = maxPoints;
+	}
+
+	/**
+	 * Appends polylines to the log. Compacts the log if it exceeds its budget.
+	 *
+	 * @param polylines polylines in order they were drawn
+	 */
+	public synchronized void append(List<Polyline> polylines) {
+		for (Polyline polyline : polylines) {
+			int[] added = polyline.getPoints();
+			if (count == starts.length) {
+				starts = Arrays.copyOf(starts, 2 * count);
+				palette = Arrays.copyOf(palette, 2 * count);
+				rgb = Arrays.copyOf(rgb, 2 * count);
+			}
+			if (size + added.length > points.length)
+				points = Arrays.copyOf(points, Math.max(2 * points.length, size + added.length));
+			starts[count] = size;
+			palette[count] = (byte) polyline.getPaletteIndex();
+			rgb[count] = polyline.getRgb();
+			count++;
+			System.arraycopy(added, 0, points, size, added.length);
+			size += added.length;
+		}
+		if (getPointCount() > maxPoints)
+			compact();
+	}
+
+	/**
+	 * Forgets all the strokes, e.g. after the canvas was cleaned or the word
+	 * changed.
+	 */
+	public synchronized void clear() {
+		points = new int[2 * INITIAL_CAPACITY];
+		starts = new int[INITIAL_CAPACITY / 8];
+		palette = new byte[INITIAL_CAPACITY / 8];
+		rgb = new int[INITIAL_CAPACITY / 8];
+		size = 0;
+		count = 0;
+	}
+
+	/**
+	 * @return copy of the strokes in order they were drawn
+	 */
+	public synchronized List<Polyline> snapshot() {
+		List<Polyline> polylines = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			polylines.add(new Polyline(palette[i] & 0xFF, rgb[i], Arrays.copyOfRange(points, starts[i], end(i))));
+		return polylines;
+	}
+
+	public synchronized int getPointCount() {
+		return size / 2;
+	}
+
+	public synchronized boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * Reduces the log to half of its budget, so compaction does not run on every
+	 * append.
+	 */
+	private void compact() {
+		int target = maxPoints / 2;
+		for (int tolerance = 1; getPointCount() > target && tolerance <= MAX_TOLERANCE; tolerance *= 2)
+			simplify(tolerance);
+		if (getPointCount() > target)
+			dropOldest(target);
+	}
+
+	/**
+	 * Simplifies every polyline with Ramer-Douglas-Peucker algorithm. Points are
+	 * moved towards the beginning of the array in place.
+	 *
+	 * @param tolerance maximal distance of removed point from the simplified line
+	 */
+	private void simplify(int tolerance) {
+		boolean[] keep = new boolean[size / 2];
+		int[] stack = new int[64];
+		int newSize = 0;
+		for (int i = 0; i < count; i++) {
+			int first = starts[i] / 2;
+			int last = end(i) / 2 - 1;
+			markKept(first, last, tolerance, keep, stack);
+			starts[i] = newSize;
+			for (int p = first; p <= last; p++) {
+				if (keep[p]) {
+					points[newSize++] = points[2 * p];
+					points[newSize++] = points[2 * p + 1];
+				}
+			}
+		}
+		size = newSize;
+	}
+
+	private void markKept(int first, int last, int tolerance, boolean[] keep, int[] stack) {
+		keep[first] = true;
+		keep[last] = true;
+		int top = 0;
+		stack[top++] = first;
+		stack[top++] = last;
+		while (top > 0) {
+			int to = stack[--top];
+			int from = stack[--top];
+			int farthest = -1;
+			double maxDistance = tolerance;
+			for (int p = from + 1; p < to; p++) {
+				double distance = distance(p, from, to);
+				if (distance > maxDistance) {
+					maxDistance = distance;
+					farthest = p;
+				}
+			}
+			if (farthest < 0)
+				continue;
+			keep[farthest] = true;
+			if (top + 4 > stack.length)
+				stack = Arrays.copyOf(stack, 2 * stack.length);
+			stack[top++] = from;
+			stack[top++] = farthest;
+			stack[top++] = farthest;
+			stack[top++] = to;
+		}
+	}
+
+	/**
+	 * @return distance of point p from the line segment between points a and b
+	 */
+	private double distance(int p, int a, int b) {
+		double px = points[2 * p], py = points[2 * p + 1];
+		double ax = points[2 * a], ay = points[2 * a + 1];
+		double dx = points[2 * b] - ax, dy = points[2 * b + 1] - ay;
+		double lengthSquared = dx * dx + dy * dy;
+		double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+		return Math.hypot(px - ax - t * dx, py - ay - t * dy);
+	}
+
+	/**
+	 * Forgets the oldest polylines so that at most target points are left. The
+	 * newest polyline is always kept.
+	 */
+	private void dropOldest(int target) {
+		int dropped = 0;
+		while (dropped < count - 1 && (size - starts[dropped]) / 2 > target)
+			dropped++;
+		if (dropped == 0)
+			return;
+		int offset = starts[dropped];
+		System.arraycopy(points, offset, points, 0, size - offset);
+		size -= offset;
+		for (int i = dropped; i < count; i++) {
+			starts[i - dropped] = starts[i] - offset;
+			palette[i - dropped] = palette[i];
+			rgb[i - dropped] = rgb[i];
+		}
+		count -= dropped;
+	}
+
+	private int end(int i) {
+		return i + 1 < count ? starts[i + 1] : size;
+	}
+
+}
@@ -0,0 +1,87 @@
+package game;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import db.WordService;
+import exception.GameIntegrityViolationException;
+
+/**
+ * Words to guess in a room, in random order without repetition. All the words
+ * are shuffled once, then the next word is just the next index. When all of
+ * them have been used, or new words have been loaded, the deck is shuffled
+ * again. Word dealt for a round started by another user in the meantime is put
+ * back and dealt first next time.
+ */
+public class WordDeck {
+
+	private final Supplier<String[]> source;
+
+	// Guarded by this
+	private String[] words;
+	private int[] order;
+	private int position;
+	private final Deque<String> putBack = new ArrayDeque<>();
+
+	/**
+	 * Deck of the words loaded by {@link WordService}.
+	 */
+	public WordDeck() {
+		this(() -> WordService.getInstance().getWords());
+	}
+
+	/**
+	 * @param source all the words, array must not be modified
+	 */
+	WordDeck(Supplier<String[]> source) {
+		this.source = source;
+	}
+
+	/**
+	 * @return next word to guess
+	 * @throws GameIntegrityViolationException when there are no words
+	 */
+	public synchronized String next() throws GameIntegrityViolationException {
+		if (!putBack.isEmpty())
+			return putBack.pop();
+		String[] current = source.get();
+		if (current.length == 0)
+			throw new GameIntegrityViolationException("Was not able to get new word to guess!");
+		if (current != words || position == order.length)
+			shuffle(current);
+		return words[order[position++]];
+	}
+
+	/**
+	 * Returns word dealt for a round which another user has started first, words
+	 * are only ever added so it is still in the deck.
+	 *
+	 * @param word word returned by {@link #next()}
+	 */
+	public synchronized void putBack(String word) {
+		putBack.push(word);
+	}
+
+	/**
+	 * Fisher-Yates shuffle of the word indexes.
+	 */
+	private void shuffle(String[] current) {
+		words = current;
+		if (order == null || order.length != current.length) {
+			order = new int[current.length];
+			for (int i = 0; i < order.length; i++)
+				order[i] = i;
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = order.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+		position = 0;
+	}
+
+}
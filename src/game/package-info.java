@@ -0,0 +1,7 @@
+
+/**
+ * In-memory state of the game. It is the source of truth for active users,
+ * drawing user, word to guess and scores. Database only receives its
+ * snapshot.
+ */
+package game;
\ No newline at end of file
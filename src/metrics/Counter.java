@@ -0,0 +1,30 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Monotonic counter. Incrementing from many threads does not contend, value is
+ * summed up only when read.
+ */
+public class Counter implements LongSupplier {
+
+	private final LongAdder value = new LongAdder();
+
+	public void increment() {
+		value.increment();
+	}
+
+	/**
+	 * @param delta non-negative amount to be added
+	 */
+	public void add(long delta) {
+		value.add(delta);
+	}
+
+	@Override
+	public long getAsLong() {
+		return value.sum();
+	}
+
+}
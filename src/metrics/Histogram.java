@@ -0,0 +1,99 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram with log-linear buckets in the manner of HdrHistogram.
+ * Values below 8 have their own buckets, above that every power of two is
+ * split into 8 buckets, so quantiles are accurate to 12.5% over the whole
+ * range of long. Recording is one increment of an atomic array element and
+ * does not allocate.
+ */
+public class Histogram {
+
+	private static final int SUB_BITS = 3;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int BUCKETS = SUB_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param value value to be recorded, negative values are recorded as 0
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		buckets.incrementAndGet(index(value));
+		count.increment();
+		sum.add(value);
+		if (value > max.get())
+			max.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * Records time elapsed since given start.
+	 *
+	 * @param startNanos result of System.nanoTime() taken at the start
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getSum() {
+		return sum.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @param quantile quantile from 0 to 1, e.g. 0.99
+	 * @return highest value of the bucket containing the quantile, not greater
+	 *         than the maximum recorded value, 0 if nothing has been recorded
+	 */
+	public long getQuantile(double quantile) {
+		long total = 0;
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(highestValue(i), max.get());
+		}
+		return max.get();
+	}
+
+	static int index(long value) {
+		if (value < SUB_COUNT)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BITS;
+		return SUB_COUNT + shift * SUB_COUNT + (int) ((value >>> shift) & (SUB_COUNT - 1));
+	}
+
+	static long highestValue(int index) {
+		if (index < SUB_COUNT)
+			return index;
+		int shift = (index - SUB_COUNT) / SUB_COUNT;
+		long lowest = (long) (SUB_COUNT + (index - SUB_COUNT) % SUB_COUNT) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+}
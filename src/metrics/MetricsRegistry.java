@@ -0,0 +1,230 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registry of all the metrics of the application. Metric is identified by its
+ * name and optionally by one label, e.g. kalambury_chat_messages_total with
+ * label type="MESSAGE". Asking for the same metric twice returns the same
+ * object, so hot paths should look their metrics up once and keep them in
+ * fields. Exported in Prometheus text format, histograms as summaries with
+ * 0.5, 0.99 and 0.999 quantiles. It is a singleton and is meant to be injected
+ * as a field i.e. private MetricsRegistry metrics =
+ * MetricsRegistry.getInstance();
+ */
+public class MetricsRegistry {
+
+	private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+	private enum Type {
+		COUNTER, GAUGE, SUMMARY
+	}
+
+	/**
+	 * Metrics with the same name, one per label value.
+	 */
+	private static class Family {
+		final String name;
+		final String help;
+		final Type type;
+		final String label;
+		// Histograms are exported divided by the scale, e.g. nanoseconds as seconds
+		final double scale;
+		final ConcurrentMap<String, Object> series = new ConcurrentHashMap<>();
+
+		Family(String name, String help, Type type, String label, double scale) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+			this.label = label;
+			this.scale = scale;
+		}
+	}
+
+	private final ConcurrentMap<String, Family> families = new ConcurrentHashMap<>();
+
+	private static MetricsRegistry instance;
+
+	private MetricsRegistry() {
+	}
+
+	/**
+	 * Implementation of the singleton pattern. Creates MetricsRegistry object.
+	 *
+	 * @return instance of MetricsRegistry
+	 */
+	public static synchronized MetricsRegistry getInstance() {
+		if (instance == null)
+			instance = new MetricsRegistry();
+		return instance;
+	}
+
+	/**
+	 * @param name metric name, should end with _total
+	 * @param help description
+	 * @return counter
+	 */
+	public Counter counter(String name, String help) {
+		return counter(name, help, null, null);
+	}
+
+	/**
+	 * @param name       metric name, should end with _total
+	 * @param help       description
+	 * @param label      label name
+	 * @param labelValue label value
+	 * @return counter
+	 */
+	public Counter counter(String name, String help, String label, String labelValue) {
+		return (Counter) series(family(name, help, Type.COUNTER, label, 1), labelValue, Counter::new);
+	}
+
+	/**
+	 * Registers counter kept by somebody else, e.g. a thread pool.
+	 *
+	 * @param name  metric name, should end with _total
+	 * @param help  description
+	 * @param value current value of the counter
+	 */
+	public void counter(String name, String help, LongSupplier value) {
+		family(name, help, Type.COUNTER, null, 1).series.put("", value);
+	}
+
+	/**
+	 * @param name  metric name
+	 * @param help  description
+	 * @param value current value, read on export
+	 */
+	public void gauge(String name, String help, LongSupplier value) {
+		gauge(name, help, null, null, value);
+	}
+
+	/**
+	 * @param name       metric name
+	 * @param help       description
+	 * @param label      label name
+	 * @param labelValue label value
+	 * @param value      current value, read on export
+	 */
+	public void gauge(String name, String help, String label, String labelValue, LongSupplier value) {
+		family(name, help, Type.GAUGE, label, 1).series.put(key(labelValue), value);
+	}
+
+	/**
+	 * @param name metric name, should end with the unit e.g. _seconds
+	 * @param help description
+	 * @return histogram of durations recorded in nanoseconds, exported in seconds
+	 */
+	public Histogram timer(String name, String help) {
+		return timer(name, help, null, null);
+	}
+
+	/**
+	 * @param name       metric name, should end with the unit e.g. _seconds
+	 * @param help       description
+	 * @param label      label name
+	 * @param labelValue label value
+	 * @return histogram of durations recorded in nanoseconds, exported in seconds
+	 */
+	public Histogram timer(String name, String help, String label, String labelValue) {
+		return (Histogram) series(family(name, help, Type.SUMMARY, label, 1e9), labelValue, Histogram::new);
+	}
+
+	/**
+	 * @param name metric name
+	 * @param help description
+	 * @return histogram of values exported as they are
+	 */
+	public Histogram histogram(String name, String help) {
+		return (Histogram) series(family(name, help, Type.SUMMARY, null, 1), null, Histogram::new);
+	}
+
+	/**
+	 * @return all the metrics in Prometheus text exposition format
+	 */
+	public String scrape() {
+		StringBuilder out = new StringBuilder(4096);
+		for (Family family : new TreeMap<>(families).values()) {
+			out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+			out.append("# TYPE ").append(family.name).append(' ').append(family.type.name().toLowerCase())
+					.append('\n');
+			for (Map.Entry<String, Object> series : new TreeMap<>(family.series).entrySet()) {
+				String labelValue = series.getKey().isEmpty() ? null : series.getKey();
+				if (series.getValue() instanceof Histogram) {
+					Histogram histogram = (Histogram) series.getValue();
+					for (double quantile : QUANTILES) {
+						sample(out, family.name, family.label, labelValue, String.valueOf(quantile),
+								histogram.getQuantile(quantile) / family.scale);
+					}
+					sample(out, family.name + "_sum", family.label, labelValue, null,
+							histogram.getSum() / family.scale);
+					sample(out, family.name + "_count", family.label, labelValue, null, histogram.getCount());
+				} else {
+					sample(out, family.name, family.label, labelValue, null,
+							((LongSupplier) series.getValue()).getAsLong());
+				}
+			}
+		}
+		return out.toString();
+	}
+
+	private Family family(String name, String help, Type type, String label, double scale) {
+		// Plain get first, computeIfAbsent locks even when the key exists
+		Family family = families.get(name);
+		if (family == null)
+			family = families.computeIfAbsent(name, (n) -> new Family(n, help, type, label, scale));
+		if (family.type != type || (label == null ? family.label != null : !label.equals(family.label)))
+			throw new IllegalArgumentException("Metric " + name + " is already registered with another type.");
+		return family;
+	}
+
+	private static Object series(Family family, String labelValue, Supplier<Object> factory) {
+		String key = key(labelValue);
+		Object series = family.series.get(key);
+		return series != null ? series : family.series.computeIfAbsent(key, (k) -> factory.get());
+	}
+
+	private static String key(String labelValue) {
+		return labelValue == null ? "" : labelValue;
+	}
+
+	private static void sample(StringBuilder out, String name, String label, String labelValue, String quantile,
+			double value) {
+		out.append(name);
+		if (labelValue != null || quantile != null) {
+			out.append('{');
+			if (labelValue != null) {
+				out.append(label).append("=\"");
+				escape(out, labelValue);
+				out.append('"');
+			}
+			if (quantile != null)
+				out.append(labelValue != null ? "," : "").append("quantile=\"").append(quantile).append('"');
+			out.append('}');
+		}
+		out.append(' ');
+		if (value == Math.rint(value) && Math.abs(value) < 1e15)
+			out.append((long) value);
+		else
+			out.append(value);
+		out.append('\n');
+	}
+
+	private static void escape(StringBuilder out, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' || c == '"')
+				out.append('\\').append(c);
+			else if (c == '\n')
+				out.append("\\n");
+			else
+				out.append(c);
+		}
+	}
+
+}
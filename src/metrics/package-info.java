@@ -0,0 +1,6 @@
+
+/**
+ * In-process metrics: lock-free counters, latency histograms and gauges,
+ * exported in Prometheus text format by rest.MetricsRest.
+ */
+package metrics;
\ No newline at end of file
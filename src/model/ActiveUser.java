@@ -5,6 +5,7 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
@@ -15,7 +16,7 @@ import javax.persistence.Table;
  * @author Piotr Koodziejski
  */
 @Entity
-@Table(name = "uytkownicy_aktywni")
+@Table(name = "uytkownicy_aktywni", indexes = @Index(columnList = "pokj"))
 public class ActiveUser {
 
 	@Id
@@ -31,6 +32,9 @@ public class ActiveUser {
 	@Column(name = "id_sesji")
 	private String chatSessionId;
 
+	@Column(name = "pokj")
+	private String room;
+
 	@OneToOne
 	@JoinColumn(name = "idu")
 	private User user;
@@ -71,6 +75,14 @@ public class ActiveUser {
 		this.chatSessionId = chatSessionId;
 	}
 
+	public String getRoom() {
+		return room;
+	}
+
+	public void setRoom(String room) {
+		this.room = room;
+	}
+
 	public String getWord() {
 		return word;
 	}
@@ -26,4 +26,21 @@ public class AppDictionary {
 	@Column(name = "warto")
 	private String value;
 
+	public AppDictionary() {
+
+	}
+
+	public AppDictionary(String key, String value) {
+		this.key = key;
+		this.value = value;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
 }
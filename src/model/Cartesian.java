@@ -0,0 +1,36 @@
+package model;
+
+/**
+ * Point on the canvas or size of the canvas.
+ */
+public class Cartesian {
+
+	private double x;
+	private double y;
+
+	public Cartesian() {
+
+	}
+
+	public Cartesian(double x, double y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public void setX(double x) {
+		this.x = x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	public void setY(double y) {
+		this.y = y;
+	}
+
+}
@@ -0,0 +1,57 @@
+package model;
+
+/**
+ * Single segment of a drawing in JSON format. Coordinates are relative to the
+ * size of the sender's canvas.
+ */
+public class DrawingMessage {
+
+	private Cartesian from;
+	private Cartesian to;
+	private Cartesian size;
+	private String color;
+
+	public DrawingMessage() {
+
+	}
+
+	public DrawingMessage(Cartesian from, Cartesian to, Cartesian size, String color) {
+		this.from = from;
+		this.to = to;
+		this.size = size;
+		this.color = color;
+	}
+
+	public Cartesian getFrom() {
+		return from;
+	}
+
+	public void setFrom(Cartesian from) {
+		this.from = from;
+	}
+
+	public Cartesian getTo() {
+		return to;
+	}
+
+	public void setTo(Cartesian to) {
+		this.to = to;
+	}
+
+	public Cartesian getSize() {
+		return size;
+	}
+
+	public void setSize(Cartesian size) {
+		this.size = size;
+	}
+
+	public String getColor() {
+		return color;
+	}
+
+	public void setColor(String color) {
+		this.color = color;
+	}
+
+}
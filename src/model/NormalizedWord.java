@@ -0,0 +1,138 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Word to guess in canonical form, computed once per round. Whitespaces around
+ * are removed, runs of whitespaces inside are replaced with a single space,
+ * letters are case-folded and Polish diacritics are replaced with their base
+ * letters, so "  w  morski" and "zolw MORSKI" are the same word. Guesses are
+ * folded character by character while being compared, matching does not
+ * allocate.
+ */
+public class NormalizedWord {
+
+	private final char[] folded;
+
+	/**
+	 * @param word word to be normalized, not blank
+	 */
+	public NormalizedWord(String word) {
+		char[] buffer = new char[word.length()];
+		int length = 0;
+		boolean space = false;
+		for (int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			if (isSpace(c)) {
+				space = length > 0;
+				continue;
+			}
+			if (space) {
+				buffer[length++] = ' ';
+				space = false;
+			}
+			buffer[length++] = fold(c);
+		}
+		this.folded = Arrays.copyOf(buffer, length);
+	}
+
+	/**
+	 * Compares the guess with this word without creating any objects.
+	 *
+	 * @param guess guess to be checked
+	 * @return true if guess in canonical form equals this word
+	 */
+	public boolean matches(CharSequence guess) {
+		int n = guess.length();
+		// Folding only removes whitespaces, shorter guess cannot match
+		if (n < folded.length)
+			return false;
+		int i = 0;
+		int j = 0;
+		while (i < n && isSpace(guess.charAt(i)))
+			i++;
+		while (i < n) {
+			char c = guess.charAt(i);
+			if (isSpace(c)) {
+				while (i < n && isSpace(guess.charAt(i)))
+					i++;
+				// Whitespaces at the end do not count
+				if (i == n)
+					break;
+				c = ' ';
+			} else {
+				c = fold(c);
+				i++;
+			}
+			if (j == folded.length || folded[j] != c)
+				return false;
+			j++;
+		}
+		return j == folded.length;
+	}
+
+	/**
+	 * @return number of characters of the canonical form
+	 */
+	public int length() {
+		return folded.length;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(folded);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof NormalizedWord))
+			return false;
+		NormalizedWord other = (NormalizedWord) obj;
+		return Arrays.equals(folded, other.folded);
+	}
+
+	/**
+	 * @return canonical form
+	 */
+	@Override
+	public String toString() {
+		return new String(folded);
+	}
+
+	private static boolean isSpace(char c) {
+		return c <= ' ' || Character.isWhitespace(c) || Character.isSpaceChar(c);
+	}
+
+	/**
+	 * Locale independent case folding followed by replacing Polish diacritics.
+	 */
+	private static char fold(char c) {
+		if (c < 128)
+			return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+		c = Character.toLowerCase(Character.toUpperCase(c));
+		switch (c) {
+		case '':
+			return 'a';
+		case '':
+			return 'c';
+		case '':
+			return 'e';
+		case '':
+			return 'l';
+		case '':
+			return 'n';
+		case '':
+			return 'o';
+		case '':
+			return 's';
+		case '':
+		case '':
+			return 'z';
+		default:
+			return c;
+		}
+	}
+
+}
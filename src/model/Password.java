@@ -1,5 +1,6 @@
 package model;
 
+import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -32,7 +33,8 @@ public class Password {
 	@Column(name = "hash", length = 128)
 	private byte[] hash;
 
-	@OneToOne
+	// User is stored together with its password when signing up
+	@OneToOne(cascade = CascadeType.PERSIST)
 	private User user;
 
 	public Password() {
@@ -0,0 +1,65 @@
+package model;
+
+/**
+ * Run of connected points drawn with one color. Coordinates are quantized to
+ * fixed-point fractions of the canvas size (see service.StrokeCodec) and stored
+ * as interleaved x, y pairs. Strokes sent in JSON also keep their exact color,
+ * so clients using JSON see the colors as they were drawn.
+ */
+public class Polyline {
+
+	private final int paletteIndex;
+	private final int rgb;
+	private final int[] points;
+
+	/**
+	 * @param paletteIndex index of the color in the palette
+	 * @param points       interleaved x, y coordinates, at least two points
+	 */
+	public Polyline(int paletteIndex, int[] points) {
+		this(paletteIndex, -1, points);
+	}
+
+	/**
+	 * @param paletteIndex index of the color in the palette
+	 * @param rgb          exact color as 0xRRGGBB, -1 if not known
+	 * @param points       interleaved x, y coordinates, at least two points
+	 */
+	public Polyline(int paletteIndex, int rgb, int[] points) {
+		this.paletteIndex = paletteIndex;
+		this.rgb = rgb;
+		this.points = points;
+	}
+
+	public int getPaletteIndex() {
+		return paletteIndex;
+	}
+
+	/**
+	 * @return exact color as 0xRRGGBB, -1 if only the palette index is known,
+	 *         e.g. the stroke came in binary format
+	 */
+	public int getRgb() {
+		return rgb;
+	}
+
+	/**
+	 * @return interleaved x, y coordinates
+	 */
+	public int[] getPoints() {
+		return points;
+	}
+
+	public int getPointCount() {
+		return points.length / 2;
+	}
+
+	public int getX(int i) {
+		return points[2 * i];
+	}
+
+	public int getY(int i) {
+		return points[2 * i + 1];
+	}
+
+}
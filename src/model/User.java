@@ -6,6 +6,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 /**
  * Signed up user
@@ -14,7 +15,7 @@ import javax.persistence.Table;
  *
  */
 @Entity
-@Table(name = "uytkownicy")
+@Table(name = "uytkownicy", uniqueConstraints = @UniqueConstraint(columnNames = "nazwa"))
 public class User {
 
 	@Id
@@ -1,75 +1,143 @@
 package rest;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
 import javax.json.bind.Jsonb;
 import javax.json.bind.JsonbBuilder;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status;
 
 import db.AppDictionaryService;
 import db.PasswordService;
 import db.UserService;
+import exception.GameIntegrityViolationException;
 import model.Credentials;
 import model.Password;
+import service.CredentialCache;
+import service.HashingExecutor;
+import service.Log;
 import service.LoginUtil;
 
 /**
- * Login REST endpoint
+ * Login REST endpoint. Password hashing runs on {@link HashingExecutor}, the
+ * HTTP thread is released as soon as the request is queued. When too many
+ * logins are waiting, 503 with Retry-After header is returned. User who has
+ * recently logged in with the same password is let in without hashing, see
+ * {@link CredentialCache}.
  * 
  * @author Piotr Koodziejski
  */
 @Path("/login")
 public class LoginRest {
 
+	private Log log = Log.getLog(LoginRest.class);
 	private LoginUtil loginUtil = LoginUtil.getInstance();
 	private UserService userService = UserService.getInstance();
 	private PasswordService passwordService = PasswordService.getInstance();
 	private AppDictionaryService dictService = AppDictionaryService.getInstance();
+	private HashingExecutor hashingExecutor = HashingExecutor.getInstance();
+	private CredentialCache credentialCache = CredentialCache.getInstance();
 
 	@POST
 	@Consumes(MediaType.APPLICATION_JSON)
 	@Produces(MediaType.APPLICATION_JSON)
-	public Response login(String json) {
-		System.out.println("Login: " + json);
-		String token = null;
+	public void login(String json, @Suspended AsyncResponse response) {
+		Credentials user;
 		try {
 			Jsonb jsonb = JsonbBuilder.create();
-			Credentials user = jsonb.fromJson(json, Credentials.class);
+			user = jsonb.fromJson(json, Credentials.class);
+		} catch (Exception e) {
+			// Exception may contain the request, it is not logged
+			log.warn("Malformed login request.");
+			response.resume(Response.serverError().build());
+			return;
+		}
+		log.debug("Login: {}", user.getUsername());
 
-			// 1. check if user exists in db
-			// 2a. if exists, check if password is correct
-			// 3a. if password is correct, return a token to the user
-			//
-			// 2b. if user does not exist, create new account in a db
-			// 3b. generate a salt
-			// 4b. generate a hash
-			// 5b. store user's id, salt and hash in a db
-			// 6b. return a token to the user
+		// Recently verified, no need to hash the password again
+		if (credentialCache.isVerified(user.getUsername(), user.getPassword())) {
+			ResponseBuilder rb = Response.ok();
+			rb = loginUtil.defaultHeaders(rb);
+			response.resume(rb.entity(createJwt(user)).build());
+			return;
+		}
 
-			if (userService.userExistsInDb(user.getUsername())) {
-				Password pass = passwordService.getPasswordForUser(user.getUsername());
-				if (!loginUtil.isUserAuthenticated(user.getUsername(), pass.getHash(), pass.getSalt(),
-						user.getPassword())) {
-					throw new Exception("Password invalid");
+		try {
+			hashingExecutor.submit(() -> {
+				try {
+					return authenticate(user);
+				} catch (Exception e) {
+					throw new CompletionException(e);
 				}
-			} else {
-				System.out.println("Creating new user account.");
-				userService.createNewUser(user.getUsername(), user.getPassword());
-			}
+			}).whenComplete((token, e) -> {
+				if (e != null) {
+					log.info("Login of {} failed: {}", user.getUsername(), e.getMessage());
+					response.resume(Response.serverError().build());
+					return;
+				}
+				ResponseBuilder rb = Response.ok();
+				rb = loginUtil.defaultHeaders(rb);
+				response.resume(rb.entity(token).build());
+			});
+		} catch (RejectedExecutionException e) {
+			log.warn("Too many logins at once, rejected.");
+			ResponseBuilder rb = Response.status(Status.SERVICE_UNAVAILABLE);
+			rb = loginUtil.defaultHeaders(rb);
+			response.resume(rb.header("Retry-After", hashingExecutor.getRetryAfter()).build());
+		}
+	}
 
-			token = loginUtil.createJwt(user.getUsername(), dictService.getSecret(), dictService.getExpirationTime(),
-					dictService.getOwners());
-		} catch (Exception e) {
-			e.printStackTrace();
-			return Response.serverError().build();
+	/**
+	 * Checks the password or creates new account, both involve hashing the
+	 * password.
+	 * 
+	 * @param user credentials sent by the user
+	 * @return token for the user
+	 * @throws Exception when password is invalid or account cannot be created
+	 */
+	private String authenticate(Credentials user) throws Exception {
+		// 1. get user with password from db in one query
+		// 2a. if exists, check if password is correct
+		// 3a. if password is correct, return a token to the user
+		//
+		// 2b. if user does not exist, create new account in a db
+		// 3b. generate a salt
+		// 4b. generate a hash
+		// 5b. store user's id, salt and hash in a db
+		// 6b. return a token to the user
+		// 7b. if the same username has just been signed up by somebody else, continue with 2a.
+
+		Password pass = passwordService.getPasswordWithUser(user.getUsername());
+		if (pass == null) {
+			log.info("Creating new user account: {}", user.getUsername());
+			if (!userService.createNewUser(user.getUsername(), user.getPassword())) {
+				pass = passwordService.getPasswordWithUser(user.getUsername());
+				// User exists without a password, never let anybody in without checking it
+				if (pass == null)
+					throw new GameIntegrityViolationException("Password does not exist!");
+			}
 		}
-		ResponseBuilder rb = Response.ok();
-		rb = loginUtil.defaultHeaders(rb);
-		return rb.entity(token).build();
+		if (pass != null && !loginUtil.isUserAuthenticated(user.getUsername(), pass.getHash(), pass.getSalt(),
+				user.getPassword())) {
+			throw new Exception("Password invalid");
+		}
+		credentialCache.put(user.getUsername(), user.getPassword());
+
+		return createJwt(user);
+	}
+
+	private String createJwt(Credentials user) {
+		return loginUtil.createJwt(user.getUsername(), dictService.getSecret(), dictService.getExpirationTime(),
+				dictService.getOwners());
 	}
 
 }
@@ -0,0 +1,24 @@
+package rest;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import metrics.MetricsRegistry;
+
+/**
+ * Metrics REST endpoint, /rest/metrics returns all the metrics in Prometheus
+ * text format.
+ */
+@Path("/metrics")
+public class MetricsRest {
+
+	private MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+	@GET
+	@Produces("text/plain; version=0.0.4; charset=utf-8")
+	public String scrape() {
+		return metrics.scrape();
+	}
+
+}
@@ -0,0 +1,164 @@
+package service;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes log records on a background thread. Logging thread only puts the
+ * record into a bounded queue, message is formatted and written by the writer
+ * thread, so threads handling websocket messages never wait for the console.
+ * When the queue is full records are dropped and counted.
+ */
+class AsyncAppender {
+
+	private static final int CAPACITY = 8192;
+	private static final int BATCH = 256;
+	private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
+			.withZone(ZoneId.systemDefault());
+
+	/**
+	 * Log event, arguments are formatted by the writer thread.
+	 */
+	static final class Record {
+		final long time = System.currentTimeMillis();
+		final String thread = Thread.currentThread().getName();
+		final Log.Level level;
+		final String logger;
+		final String pattern;
+		final Object arg1;
+		final Object arg2;
+		final Throwable error;
+
+		Record(Log.Level level, String logger, String pattern, Object arg1, Object arg2, Throwable error) {
+			this.level = level;
+			this.logger = logger;
+			this.pattern = pattern;
+			this.arg1 = arg1;
+			this.arg2 = arg2;
+			this.error = error;
+		}
+	}
+
+	private final BlockingQueue<Record> queue = new ArrayBlockingQueue<>(CAPACITY);
+	private final LongAdder dropped = new LongAdder();
+	private final PrintStream out;
+	private final PrintStream err;
+	private final Thread writer;
+
+	AsyncAppender(PrintStream out, PrintStream err) {
+		this.out = out;
+		this.err = err;
+		writer = new Thread(this::run, "log-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Queues the record, never blocks.
+	 *
+	 * @param record record to be written
+	 */
+	void append(Record record) {
+		if (!queue.offer(record))
+			dropped.increment();
+	}
+
+	/**
+	 * @return number of records dropped because the queue was full
+	 */
+	long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Waits until queued records are written, at most given time.
+	 *
+	 * @param millis maximal time to wait
+	 */
+	void flush(long millis) {
+		long deadline = System.currentTimeMillis() + millis;
+		while (!queue.isEmpty() && System.currentTimeMillis() < deadline) {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Writes queued records and stops the writer thread.
+	 *
+	 * @param millis maximal time to wait for the queued records
+	 */
+	void close(long millis) {
+		flush(millis);
+		writer.interrupt();
+	}
+
+	private void run() {
+		List<Record> batch = new ArrayList<>(BATCH);
+		StringBuilder line = new StringBuilder(256);
+		long reportedDropped = 0;
+		while (true) {
+			try {
+				Record first = queue.poll(1, TimeUnit.SECONDS);
+				if (first == null)
+					continue;
+				batch.add(first);
+				queue.drainTo(batch, BATCH - 1);
+			} catch (InterruptedException e) {
+				return;
+			}
+			for (Record record : batch)
+				write(record, line);
+			batch.clear();
+
+			long droppedNow = dropped.sum();
+			if (droppedNow != reportedDropped) {
+				err.println("AsyncAppender: " + (droppedNow - reportedDropped) + " log records dropped.");
+				reportedDropped = droppedNow;
+			}
+			out.flush();
+			err.flush();
+		}
+	}
+
+	private void write(Record record, StringBuilder line) {
+		line.setLength(0);
+		TIME.formatTo(Instant.ofEpochMilli(record.time), line);
+		line.append(' ').append(record.level).append(" [").append(record.thread).append("] ")
+				.append(record.logger).append(": ");
+		format(line, record.pattern, record.arg1, record.arg2);
+
+		PrintStream stream = record.level.compareTo(Log.Level.WARN) >= 0 ? err : out;
+		stream.println(line);
+		if (record.error != null)
+			record.error.printStackTrace(stream);
+	}
+
+	/**
+	 * Replaces {} placeholders with the arguments in order.
+	 */
+	static void format(StringBuilder line, String pattern, Object arg1, Object arg2) {
+		int from = 0;
+		int argument = 0;
+		int at;
+		while (argument < 2 && (at = pattern.indexOf("{}", from)) >= 0) {
+			line.append(pattern, from, at).append(argument == 0 ? arg1 : arg2);
+			from = at + 2;
+			argument++;
+		}
+		line.append(pattern, from, pattern.length());
+	}
+
+}
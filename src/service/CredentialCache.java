@@ -0,0 +1,127 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import db.AppDictionaryService;
+import db.DictionarySnapshot;
+import exception.GameIntegrityViolationException;
+
+/**
+ * Remembers users who have recently logged in with correct password, so a user
+ * logging in again within a short time is not verified with PBKDF2 again.
+ * Password itself is never stored, only its HMAC with a random key generated
+ * at startup, which is fast to compute and useless outside of this process.
+ * Entries expire after a short time and the number of them is limited. It is
+ * a singleton and is meant to be injected as a field i.e. private
+ * CredentialCache credentialCache = CredentialCache.getInstance();
+ */
+public class CredentialCache {
+
+	private static final String HMAC = "HmacSHA256";
+
+	private AppDictionaryService dictService = AppDictionaryService.getInstance();
+
+	private final SecretKeySpec key;
+	private final long ttl;
+	private final int maxSize;
+	private final ConcurrentMap<String, Entry> verified = new ConcurrentHashMap<>();
+
+	private static CredentialCache instance;
+
+	private CredentialCache() {
+		byte[] random = new byte[32];
+		new SecureRandom().nextBytes(random);
+		key = new SecretKeySpec(random, HMAC);
+		DictionarySnapshot dict = dictService.snapshot();
+		ttl = dict.getCredentialCacheTtl();
+		maxSize = dict.getCredentialCacheSize();
+	}
+
+	/**
+	 * Implementation of the singleton pattern. Creates CredentialCache object.
+	 *
+	 * @return instance of CredentialCache
+	 */
+	public static synchronized CredentialCache getInstance() {
+		if (instance == null)
+			instance = new CredentialCache();
+		return instance;
+	}
+
+	/**
+	 * @param username username
+	 * @param password password sent by the user
+	 * @return true if the user has recently logged in with the same password
+	 */
+	public boolean isVerified(String username, String password) {
+		if (ttl <= 0 || username == null || password == null)
+			return false;
+		Entry entry = verified.get(username);
+		if (entry == null)
+			return false;
+		if (entry.expiresAt <= System.currentTimeMillis()) {
+			verified.remove(username, entry);
+			return false;
+		}
+		return MessageDigest.isEqual(entry.mac, mac(password));
+	}
+
+	/**
+	 * Remembers correct password of the user.
+	 *
+	 * @param username username
+	 * @param password password verified with PBKDF2
+	 */
+	public void put(String username, String password) {
+		if (ttl <= 0 || username == null || password == null)
+			return;
+		long now = System.currentTimeMillis();
+		if (verified.size() >= maxSize) {
+			verified.values().removeIf((entry) -> entry.expiresAt <= now);
+			if (verified.size() >= maxSize)
+				return;
+		}
+		verified.put(username, new Entry(mac(password), now + ttl));
+	}
+
+	/**
+	 * Forgets the user, has to be called whenever the password changes.
+	 *
+	 * @param username username
+	 */
+	public void invalidate(String username) {
+		if (username != null)
+			verified.remove(username);
+	}
+
+	private byte[] mac(String password) {
+		try {
+			Mac mac = Mac.getInstance(HMAC);
+			mac.init(key);
+			return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException | InvalidKeyException e) {
+			throw new GameIntegrityViolationException("Authentication internal error!", e);
+		}
+	}
+
+	private static class Entry {
+
+		private final byte[] mac;
+		private final long expiresAt;
+
+		private Entry(byte[] mac, long expiresAt) {
+			this.mac = mac;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
@@ -5,6 +5,7 @@ import java.util.stream.Collectors;
 
 import exception.InvalidWordException;
 import model.ActiveUser;
+import model.NormalizedWord;
 import model.Score;
 
 /**
@@ -35,11 +36,18 @@ public class GameUtil {
 	 * @return true if word is null, empty or blank, false otherwise
 	 */
 	public boolean isWordInvalid(String word) {
-		return word == null || word.isEmpty() || word.trim().isEmpty();
+		if (word == null)
+			return true;
+		for (int i = 0; i < word.length(); i++) {
+			if (word.charAt(i) > ' ')
+				return false;
+		}
+		return true;
 	}
 
 	/**
-	 * Comparison is not case sensitive and does not care about whitespaces around
+	 * Comparison is not case sensitive, does not care about whitespaces around
+	 * and Polish diacritics (see NormalizedWord)
 	 * 
 	 * @param w1 first word
 	 * @param w2 second word
@@ -47,13 +55,26 @@ public class GameUtil {
 	 * @throws InvalidWordException one of words is null or blank
 	 */
 	public boolean compareWords(String w1, String w2) throws InvalidWordException {
-		if (isWordInvalid(w1))
-			throw new InvalidWordException("First word is null empty or blank.");
-
 		if (isWordInvalid(w2))
 			throw new InvalidWordException("Second word is null empty or blank.");
 
-		return w1.trim().toUpperCase().equals(w2.trim().toUpperCase());
+		return compareWords(w1, new NormalizedWord(w2));
+	}
+
+	/**
+	 * Compares the guess with the word normalized in advance. Does not allocate,
+	 * meant for checking every chat message.
+	 * 
+	 * @param guess guess to be checked
+	 * @param word  normalized word to guess
+	 * @return true if words are equal
+	 * @throws InvalidWordException guess is null or blank
+	 */
+	public boolean compareWords(String guess, NormalizedWord word) throws InvalidWordException {
+		if (isWordInvalid(guess))
+			throw new InvalidWordException("First word is null empty or blank.");
+
+		return word.matches(guess);
 	}
 
 	/**
@@ -0,0 +1,139 @@
+package service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import db.AppDictionaryService;
+import db.DictionarySnapshot;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+
+/**
+ * Bounded pool of threads for password hashing. PBKDF2 takes tens of
+ * milliseconds of CPU, running it on HTTP threads lets a burst of logins starve
+ * all the other requests. Pool has as many threads as there are processors
+ * unless configured otherwise and a limited queue. When the queue is full the
+ * task is rejected, so the client can be told to come back later. It is a
+ * singleton and is meant to be injected as a field i.e. private HashingExecutor
+ * hashingExecutor = HashingExecutor.getInstance();
+ */
+public class HashingExecutor {
+
+	private AppDictionaryService dictService = AppDictionaryService.getInstance();
+	private MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+	private final ThreadPoolExecutor executor;
+	private final int retryAfter;
+
+	// Metrics
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final Histogram waitTime = metrics.timer("kalambury_hashing_wait_seconds",
+			"Time of a login task waiting in the hashing queue.");
+	private final Histogram taskTime = metrics.timer("kalambury_hashing_task_seconds",
+			"Time of running a login task, password hashing included.");
+
+	private static HashingExecutor instance;
+
+	private HashingExecutor() {
+		DictionarySnapshot dict = dictService.snapshot();
+		int threads = dict.getHashingThreads() > 0 ? dict.getHashingThreads()
+				: Runtime.getRuntime().availableProcessors();
+		AtomicInteger counter = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(dict.getHashingQueueSize()), (r) -> {
+					Thread t = new Thread(r, "password-hashing-" + counter.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}, new ThreadPoolExecutor.AbortPolicy());
+		retryAfter = dict.getHashingRetryAfter();
+
+		metrics.gauge("kalambury_hashing_queue_depth", "Logins waiting for password hashing.", this::getQueueDepth);
+		metrics.gauge("kalambury_hashing_active", "Passwords being hashed.", this::getActiveCount);
+		metrics.counter("kalambury_hashing_completed_total", "Completed login tasks.", this::getCompletedCount);
+		metrics.counter("kalambury_hashing_rejected_total", "Logins rejected with 503.", this::getRejectedCount);
+	}
+
+	/**
+	 * Implementation of the singleton pattern. Creates HashingExecutor object.
+	 *
+	 * @return instance of HashingExecutor
+	 */
+	public static synchronized HashingExecutor getInstance() {
+		if (instance == null)
+			instance = new HashingExecutor();
+		return instance;
+	}
+
+	/**
+	 * Stops the threads of the instance if it has been created, used on
+	 * shutdown. Logins already queued are completed.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null)
+			instance.executor.shutdown();
+	}
+
+	/**
+	 * Queues the task.
+	 *
+	 * @param <T>  result type
+	 * @param task task hashing a password
+	 * @return result of the task
+	 * @throws RejectedExecutionException when the queue is full
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<T> task) throws RejectedExecutionException {
+		long queued = System.nanoTime();
+		try {
+			return CompletableFuture.supplyAsync(() -> {
+				long start = System.nanoTime();
+				waitTime.record(start - queued);
+				try {
+					return task.get();
+				} finally {
+					taskTime.recordSince(start);
+					completed.increment();
+				}
+			}, executor);
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return seconds after which rejected client should try again
+	 */
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+
+	/**
+	 * @return number of tasks waiting in the queue
+	 */
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * @return number of tasks being run at the moment
+	 */
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+
+	public long getCompletedCount() {
+		return completed.sum();
+	}
+
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+}
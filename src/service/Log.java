@@ -0,0 +1,179 @@
+package service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import metrics.MetricsRegistry;
+
+/**
+ * Leveled logging facade. Records are written asynchronously by
+ * {@link AsyncAppender}, disabled levels cost one comparison and messages are
+ * formatted only when written. Arguments are passed separately, {} in the
+ * pattern is replaced by the next argument, e.g.
+ * log.info("New session {} in room {}", id, room).
+ *
+ * Events happening for every message should be logged with debugSampled, only
+ * one of every {@link #getSampleRate()} of them is written. Level and sample
+ * rate are set from the application dictionary (LOG_LEVEL, LOG_SAMPLE_RATE).
+ * Logs are meant to be created as a field i.e. private Log log =
+ * Log.getLog(ChatWebsocket.class);
+ *
+ * Never log credentials, tokens or whole incoming messages.
+ */
+public final class Log {
+
+	public enum Level {
+		TRACE, DEBUG, INFO, WARN, ERROR, OFF
+	}
+
+	private static final AsyncAppender APPENDER = new AsyncAppender(System.out, System.err);
+
+	private static volatile Level level = Level.INFO;
+	private static volatile int sampleRate = 100;
+
+	static {
+		MetricsRegistry.getInstance().counter("kalambury_log_dropped_total",
+				"Log records dropped by the asynchronous appender.", Log::getDropped);
+	}
+
+	private final String name;
+
+	private Log(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param owner class using the log
+	 * @return log named after the class
+	 */
+	public static Log getLog(Class<?> owner) {
+		return new Log(owner.getSimpleName());
+	}
+
+	/**
+	 * Sets level and sample rate of all the logs.
+	 *
+	 * @param newLevel      lowest level written
+	 * @param newSampleRate one of how many sampled events is written, 1 writes
+	 *                      all of them
+	 */
+	public static void configure(Level newLevel, int newSampleRate) {
+		level = newLevel;
+		sampleRate = Math.max(1, newSampleRate);
+	}
+
+	public static Level getLevel() {
+		return level;
+	}
+
+	public static int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @return number of records dropped because the writer could not keep up
+	 */
+	public static long getDropped() {
+		return APPENDER.getDropped();
+	}
+
+	/**
+	 * Waits for queued records to be written, used on shutdown.
+	 */
+	public static void flush() {
+		APPENDER.flush(1000);
+	}
+
+	/**
+	 * Writes queued records and stops the writer thread, used when the
+	 * application is undeployed. Records logged afterwards are not written.
+	 */
+	public static void shutdown() {
+		APPENDER.close(1000);
+	}
+
+	public boolean isEnabled(Level l) {
+		return l.compareTo(level) >= 0;
+	}
+
+	public boolean isDebugEnabled() {
+		return isEnabled(Level.DEBUG);
+	}
+
+	public void debug(String msg) {
+		log(Level.DEBUG, msg, null, null, null);
+	}
+
+	public void debug(String pattern, Object arg) {
+		log(Level.DEBUG, pattern, arg, null, null);
+	}
+
+	public void debug(String pattern, Object arg1, Object arg2) {
+		log(Level.DEBUG, pattern, arg1, arg2, null);
+	}
+
+	/**
+	 * Debug event happening for every message, only one of every sample rate
+	 * events is written.
+	 *
+	 * @param pattern message pattern
+	 * @param arg     argument
+	 */
+	public void debugSampled(String pattern, Object arg) {
+		if (isEnabled(Level.DEBUG) && sampled())
+			APPENDER.append(new AsyncAppender.Record(Level.DEBUG, name, pattern, arg, null, null));
+	}
+
+	/**
+	 * @see #debugSampled(String, Object)
+	 * @param pattern message pattern
+	 * @param arg1    first argument
+	 * @param arg2    second argument
+	 */
+	public void debugSampled(String pattern, Object arg1, Object arg2) {
+		if (isEnabled(Level.DEBUG) && sampled())
+			APPENDER.append(new AsyncAppender.Record(Level.DEBUG, name, pattern, arg1, arg2, null));
+	}
+
+	public void info(String msg) {
+		log(Level.INFO, msg, null, null, null);
+	}
+
+	public void info(String pattern, Object arg) {
+		log(Level.INFO, pattern, arg, null, null);
+	}
+
+	public void info(String pattern, Object arg1, Object arg2) {
+		log(Level.INFO, pattern, arg1, arg2, null);
+	}
+
+	public void warn(String msg) {
+		log(Level.WARN, msg, null, null, null);
+	}
+
+	public void warn(String pattern, Object arg) {
+		log(Level.WARN, pattern, arg, null, null);
+	}
+
+	public void warn(String msg, Throwable error) {
+		log(Level.WARN, msg, null, null, error);
+	}
+
+	public void error(String msg) {
+		log(Level.ERROR, msg, null, null, null);
+	}
+
+	public void error(String msg, Throwable error) {
+		log(Level.ERROR, msg, null, null, error);
+	}
+
+	private void log(Level l, String pattern, Object arg1, Object arg2, Throwable error) {
+		if (isEnabled(l))
+			APPENDER.append(new AsyncAppender.Record(l, name, pattern, arg1, arg2, error));
+	}
+
+	private static boolean sampled() {
+		int rate = sampleRate;
+		return rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0;
+	}
+
+}
@@ -20,6 +20,8 @@ import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 
 import exception.GameIntegrityViolationException;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
 
 /**
  * Methods used during authentication
@@ -28,6 +30,11 @@ import exception.GameIntegrityViolationException;
  */
 public class LoginUtil {
 
+	private Log log = Log.getLog(LoginUtil.class);
+	private MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+	private final Histogram pbkdf2Time = metrics.timer("kalambury_pbkdf2_seconds", "Time of hashing a password.");
+
 	private static LoginUtil instance;
 
 	private LoginUtil() {
@@ -61,7 +68,7 @@ public class LoginUtil {
 					.withExpiresAt(new Date(System.currentTimeMillis() + expTime)).withClaim("owner", owners)
 					.sign(algorithm);
 		} catch (JWTCreationException e) {
-			System.err.println("JWT creation error.");
+			log.error("JWT creation error.", e);
 			return null;
 		}
 	}
@@ -83,7 +90,7 @@ public class LoginUtil {
 				throw new JWTVerificationException("Owner of a token is invalid.");
 			return true;
 		} catch (JWTVerificationException e) {
-			e.printStackTrace();
+			log.info("Token rejected: {}", e.getMessage());
 			return false;
 		}
 	}
@@ -127,12 +134,15 @@ public class LoginUtil {
 	 *                                         incorrectly
 	 */
 	public byte[] pbkdf2(String password, byte[] salt) throws GameIntegrityViolationException {
+		long start = System.nanoTime();
 		try {
 			KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, 65536, 128);
 			SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
 			return factory.generateSecret(spec).getEncoded();
 		} catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
 			throw new GameIntegrityViolationException("Authentication internal error!", e);
+		} finally {
+			pbkdf2Time.recordSince(start);
 		}
 	}
 
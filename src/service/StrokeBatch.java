@@ -0,0 +1,81 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.Polyline;
+
+/**
+ * Strokes collected between two flushes. Consecutive segments of the same
+ * color, where the next one starts at the end of the previous one, are joined
+ * into a single polyline, so a continuous line drawn by the user is sent as one
+ * polyline instead of many two-point segments. Not thread-safe.
+ */
+public class StrokeBatch {
+
+	private final List<Polyline> polylines = new ArrayList<>();
+	private int[] points = new int[32];
+	private int size;
+	private int paletteIndex;
+	private int rgb;
+	private int pointCount;
+
+	/**
+	 * Appends polyline to the batch, joining it with the last one if possible.
+	 *
+	 * @param polyline polyline to be appended
+	 */
+	public void add(Polyline polyline) {
+		int[] added = polyline.getPoints();
+		int from;
+		if (size > 0 && paletteIndex == polyline.getPaletteIndex() && rgb == polyline.getRgb()
+				&& points[size - 2] == added[0]
+				&& points[size - 1] == added[1]
+				&& size / 2 + polyline.getPointCount() - 1 <= StrokeCodec.MAX_POINTS) {
+			from = 2;
+		} else {
+			closeCurrent();
+			paletteIndex = polyline.getPaletteIndex();
+			rgb = polyline.getRgb();
+			from = 0;
+		}
+		int length = added.length - from;
+		if (size + length > points.length)
+			points = Arrays.copyOf(points, Math.max(2 * points.length, size + length));
+		System.arraycopy(added, from, points, size, length);
+		size += length;
+		pointCount += length / 2;
+	}
+
+	/**
+	 * @return number of points in the batch
+	 */
+	public int getPointCount() {
+		return pointCount;
+	}
+
+	public boolean isEmpty() {
+		return pointCount == 0;
+	}
+
+	/**
+	 * Removes all the polylines from the batch.
+	 *
+	 * @return polylines in order they were drawn
+	 */
+	public List<Polyline> drain() {
+		closeCurrent();
+		List<Polyline> drained = new ArrayList<>(polylines);
+		polylines.clear();
+		pointCount = 0;
+		return drained;
+	}
+
+	private void closeCurrent() {
+		if (size > 0)
+			polylines.add(new Polyline(paletteIndex, rgb, Arrays.copyOf(points, size)));
+		size = 0;
+	}
+
+}
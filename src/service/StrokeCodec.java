@@ -0,0 +1,298 @@
+package service;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.json.bind.JsonbException;
+
+import exception.InvalidStrokeException;
+import model.Cartesian;
+import model.DrawingMessage;
+import model.Polyline;
+
+/**
+ * Compact binary format of the drawing and its conversion from and to JSON
+ * DrawingMessage. JSON clients get one DrawingMessage per segment, the same
+ * messages they got before the binary format existed.
+ *
+ * Binary frame starts with a version byte followed by one or more polylines.
+ * Every polyline is: palette index (1 byte), number of points (2 bytes), first
+ * point (2 + 2 bytes), then x and y differences to the previous point encoded
+ * as zig-zag varints. Coordinates are fixed-point fractions of the canvas size,
+ * 0 is left/top edge and {@link #SCALE} is right/bottom edge. Colors are
+ * reduced to 256-color palette with 3 bits of red, 3 bits of green and 2 bits
+ * of blue.
+ */
+public class StrokeCodec {
+
+	/**
+	 * Version of the binary format, first byte of every frame.
+	 */
+	public static final byte VERSION = 1;
+
+	/**
+	 * Fixed-point coordinate of the right/bottom edge of the canvas.
+	 */
+	public static final int SCALE = 4095;
+
+	/**
+	 * Maximal number of points of a single polyline.
+	 */
+	public static final int MAX_POINTS = 0xFFFF;
+
+	private final Jsonb jsonb = JsonbBuilder.create();
+
+	private static StrokeCodec instance;
+
+	private StrokeCodec() {
+	}
+
+	/**
+	 * Implementation of the singleton pattern. Creates StrokeCodec object.
+	 *
+	 * @return instance of StrokeCodec
+	 */
+	public static synchronized StrokeCodec getInstance() {
+		if (instance == null)
+			instance = new StrokeCodec();
+		return instance;
+	}
+
+	/**
+	 * Encodes polylines as a single binary frame.
+	 *
+	 * @param polylines polylines to be encoded
+	 * @return read-only frame ready to be sent
+	 */
+	public ByteBuffer encode(List<Polyline> polylines) {
+		int capacity = 1;
+		for (Polyline p : polylines)
+			capacity += 7 + 10 * (p.getPointCount() - 1);
+
+		ByteBuffer buffer = ByteBuffer.allocate(capacity);
+		buffer.put(VERSION);
+		for (Polyline p : polylines) {
+			if (p.getPointCount() < 2 || p.getPointCount() > MAX_POINTS)
+				throw new InvalidStrokeException("Polyline must have from 2 to " + MAX_POINTS + " points.");
+			buffer.put((byte) p.getPaletteIndex());
+			buffer.putShort((short) p.getPointCount());
+			buffer.putShort((short) p.getX(0));
+			buffer.putShort((short) p.getY(0));
+			for (int i = 1; i < p.getPointCount(); i++) {
+				putVarint(buffer, p.getX(i) - p.getX(i - 1));
+				putVarint(buffer, p.getY(i) - p.getY(i - 1));
+			}
+		}
+		buffer.flip();
+		return buffer.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Decodes binary frame. Position of given buffer is not changed.
+	 *
+	 * @param frame binary frame
+	 * @return polylines contained in the frame
+	 * @throws InvalidStrokeException when frame is malformed
+	 */
+	public List<Polyline> decode(ByteBuffer frame) throws InvalidStrokeException {
+		ByteBuffer buffer = frame.duplicate();
+		List<Polyline> polylines = new ArrayList<>();
+		try {
+			if (buffer.get() != VERSION)
+				throw new InvalidStrokeException("Unsupported version of the stroke format.");
+			while (buffer.hasRemaining()) {
+				int paletteIndex = buffer.get() & 0xFF;
+				int count = buffer.getShort() & 0xFFFF;
+				if (count < 2)
+					throw new InvalidStrokeException("Polyline must have at least 2 points.");
+				// First point takes 4 bytes, every next one at least 2, checked before
+				// allocating for a count nobody sent
+				if (buffer.remaining() < 4 + 2 * (count - 1))
+					throw new InvalidStrokeException("Stroke frame is truncated.");
+				int[] points = new int[2 * count];
+				points[0] = buffer.getShort() & 0xFFFF;
+				points[1] = buffer.getShort() & 0xFFFF;
+				for (int i = 2; i < points.length; i++) {
+					points[i] = points[i - 2] + getVarint(buffer);
+					if (points[i] < 0 || points[i] > SCALE)
+						throw new InvalidStrokeException("Point is outside of the canvas.");
+				}
+				if (points[0] > SCALE || points[1] > SCALE)
+					throw new InvalidStrokeException("Point is outside of the canvas.");
+				polylines.add(new Polyline(paletteIndex, points));
+			}
+		} catch (BufferUnderflowException e) {
+			throw new InvalidStrokeException("Stroke frame is truncated.", e);
+		}
+		if (polylines.isEmpty())
+			throw new InvalidStrokeException("Stroke frame is empty.");
+		return polylines;
+	}
+
+	/**
+	 * @param json JSON drawing message
+	 * @return parsed drawing message
+	 * @throws InvalidStrokeException when message is malformed
+	 */
+	public DrawingMessage fromJson(String json) throws InvalidStrokeException {
+		try {
+			DrawingMessage msg = jsonb.fromJson(json, DrawingMessage.class);
+			if (msg == null || msg.getFrom() == null || msg.getTo() == null || msg.getSize() == null
+					|| msg.getSize().getX() <= 0 || msg.getSize().getY() <= 0)
+				throw new InvalidStrokeException("Drawing message is incomplete.");
+			return msg;
+		} catch (JsonbException e) {
+			throw new InvalidStrokeException("Drawing message is not a valid JSON.", e);
+		}
+	}
+
+	/**
+	 * @param msg drawing message
+	 * @return message as JSON
+	 */
+	public String toJson(DrawingMessage msg) {
+		return jsonb.toJson(msg);
+	}
+
+	/**
+	 * @param polylines polylines
+	 * @return JSON drawing messages, one per segment, each sent as its own
+	 *         websocket message
+	 */
+	public List<String> toJsonMessages(List<Polyline> polylines) {
+		List<String> messages = new ArrayList<>();
+		for (Polyline polyline : polylines) {
+			for (DrawingMessage msg : toDrawingMessages(polyline))
+				messages.add(jsonb.toJson(msg));
+		}
+		return messages;
+	}
+
+	/**
+	 * Converts JSON segment to two-point polyline. Exact color is kept for JSON
+	 * clients, binary clients get the closest palette color.
+	 *
+	 * @param msg drawing message
+	 * @return polyline with quantized coordinates
+	 */
+	public Polyline toPolyline(DrawingMessage msg) {
+		Cartesian size = msg.getSize();
+		int rgb = rgb(msg.getColor());
+		return new Polyline(rgb < 0 ? 0 : paletteIndex(rgb), rgb,
+				new int[] { quantize(msg.getFrom().getX(), size.getX()), quantize(msg.getFrom().getY(), size.getY()),
+						quantize(msg.getTo().getX(), size.getX()), quantize(msg.getTo().getY(), size.getY()) });
+	}
+
+	/**
+	 * Converts polyline to JSON segments understood by clients not supporting
+	 * binary format. Size of the canvas is set to {@link #SCALE}, receiver scales
+	 * coordinates to its own canvas.
+	 *
+	 * @param polyline polyline
+	 * @return one drawing message per segment
+	 */
+	public List<DrawingMessage> toDrawingMessages(Polyline polyline) {
+		List<DrawingMessage> messages = new ArrayList<>(polyline.getPointCount() - 1);
+		Cartesian size = new Cartesian(SCALE, SCALE);
+		String color = polyline.getRgb() < 0 ? paletteColor(polyline.getPaletteIndex())
+				: "rgba(" + (polyline.getRgb() >> 16) + "," + ((polyline.getRgb() >> 8) & 0xFF) + ","
+						+ (polyline.getRgb() & 0xFF) + ",1)";
+		for (int i = 1; i < polyline.getPointCount(); i++) {
+			messages.add(new DrawingMessage(new Cartesian(polyline.getX(i - 1), polyline.getY(i - 1)),
+					new Cartesian(polyline.getX(i), polyline.getY(i)), size, color));
+		}
+		return messages;
+	}
+
+	/**
+	 * @param color color in CSS format rgba(r,g,b,a) or rgb(r,g,b)
+	 * @return index of the closest palette color, 0 (black) if color cannot be
+	 *         parsed
+	 */
+	public int paletteIndex(String color) {
+		int rgb = rgb(color);
+		return rgb < 0 ? 0 : paletteIndex(rgb);
+	}
+
+	/**
+	 * @param rgb color as 0xRRGGBB
+	 * @return index of the closest palette color
+	 */
+	public int paletteIndex(int rgb) {
+		int r = rgb >> 16, g = (rgb >> 8) & 0xFF, b = rgb & 0xFF;
+		return (Math.round(r * 7 / 255f) << 5) | (Math.round(g * 7 / 255f) << 2) | Math.round(b * 3 / 255f);
+	}
+
+	/**
+	 * @param color color in CSS format rgba(r,g,b,a) or rgb(r,g,b)
+	 * @return color as 0xRRGGBB, alpha is ignored, -1 if color cannot be parsed
+	 */
+	public int rgb(String color) {
+		if (color == null)
+			return -1;
+		int open = color.indexOf('(');
+		int close = color.indexOf(')', open + 1);
+		if (open < 0 || close < 0)
+			return -1;
+		String[] parts = color.substring(open + 1, close).split(",");
+		if (parts.length < 3)
+			return -1;
+		try {
+			int r = clamp(Math.round(Float.parseFloat(parts[0].trim())), 255);
+			int g = clamp(Math.round(Float.parseFloat(parts[1].trim())), 255);
+			int b = clamp(Math.round(Float.parseFloat(parts[2].trim())), 255);
+			return (r << 16) | (g << 8) | b;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @param index palette index
+	 * @return color in CSS format rgba(r,g,b,1)
+	 */
+	public String paletteColor(int index) {
+		int r = Math.round(((index >> 5) & 7) * 255 / 7f);
+		int g = Math.round(((index >> 2) & 7) * 255 / 7f);
+		int b = Math.round((index & 3) * 255 / 3f);
+		return "rgba(" + r + "," + g + "," + b + ",1)";
+	}
+
+	/**
+	 * @param coordinate coordinate in pixels
+	 * @param size       size of the canvas in pixels
+	 * @return fixed-point coordinate
+	 */
+	public int quantize(double coordinate, double size) {
+		return clamp((int) Math.round(coordinate / size * SCALE), SCALE);
+	}
+
+	private static int clamp(int value, int max) {
+		return Math.max(0, Math.min(max, value));
+	}
+
+	private static void putVarint(ByteBuffer buffer, int value) {
+		int zigzag = (value << 1) ^ (value >> 31);
+		while ((zigzag & ~0x7F) != 0) {
+			buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+			zigzag >>>= 7;
+		}
+		buffer.put((byte) zigzag);
+	}
+
+	private static int getVarint(ByteBuffer buffer) {
+		int zigzag = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = buffer.get();
+			zigzag |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return (zigzag >>> 1) ^ -(zigzag & 1);
+		}
+		throw new InvalidStrokeException("Varint is too long.");
+	}
+
+}
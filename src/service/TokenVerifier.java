@@ -0,0 +1,157 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+import db.AppDictionaryService;
+import exception.GameIntegrityViolationException;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+
+/**
+ * Verifies JWT sent by websocket clients. Verifier is built once per secret
+ * and tokens which have already been verified are remembered until they
+ * expire, so a client reconnecting with the same token is accepted without
+ * computing HMAC again. Only SHA-256 digests of tokens are kept, not tokens
+ * themselves. It is a singleton and is meant to be injected as a field i.e.
+ * private TokenVerifier tokenVerifier = TokenVerifier.getInstance();
+ */
+public class TokenVerifier {
+
+	private static final int MAX_CACHED_TOKENS = 10_000;
+
+	private Log log = Log.getLog(TokenVerifier.class);
+	private AppDictionaryService dictService = AppDictionaryService.getInstance();
+	private MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+	private final Histogram verifyTime = metrics.timer("kalambury_jwt_verify_seconds",
+			"Time of verifying websocket tokens, remembered tokens included.");
+	private volatile Key key;
+
+	private static TokenVerifier instance;
+
+	private TokenVerifier() {
+	}
+
+	/**
+	 * Implementation of the singleton pattern. Creates TokenVerifier object.
+	 *
+	 * @return instance of TokenVerifier
+	 */
+	public static synchronized TokenVerifier getInstance() {
+		if (instance == null)
+			instance = new TokenVerifier();
+		return instance;
+	}
+
+	/**
+	 * Verifies given token based on secret key, chosen algorithm and owner
+	 *
+	 * @param jwtToken token to be verified
+	 * @return true if token is valid, false otherwise
+	 */
+	public boolean verify(String jwtToken) {
+		long start = System.nanoTime();
+		try {
+			return check(jwtToken);
+		} finally {
+			verifyTime.recordSince(start);
+		}
+	}
+
+	private boolean check(String jwtToken) {
+		if (jwtToken == null)
+			return false;
+		Key key = currentKey();
+		String digest = digest(jwtToken);
+		Long expiresAt = key.verified.get(digest);
+		long now = System.currentTimeMillis();
+		if (expiresAt != null) {
+			if (expiresAt > now)
+				return true;
+			key.verified.remove(digest, expiresAt);
+		}
+
+		try {
+			DecodedJWT jwt = key.verifier.verify(jwtToken);
+			if (!key.owners.equals(jwt.getClaim("owner").asString()))
+				throw new JWTVerificationException("Owner of a token is invalid.");
+			Date exp = jwt.getExpiresAt();
+			if (exp != null)
+				remember(key, digest, exp.getTime(), now);
+			return true;
+		} catch (JWTVerificationException e) {
+			log.info("Token rejected: {}", e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * @return verifier for the current secret, built again only when the secret
+	 *         or owners have changed
+	 */
+	private Key currentKey() {
+		String secret = dictService.getSecret();
+		String owners = dictService.getOwners();
+		Key current = key;
+		if (current == null || !current.secret.equals(secret) || !current.owners.equals(owners)) {
+			current = new Key(secret, owners);
+			key = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Remembers verified token. When the cache is full, expired tokens are
+	 * removed. If all of them are still valid the cache is cleared, they will be
+	 * verified again.
+	 */
+	private void remember(Key key, String digest, long expiresAt, long now) {
+		if (key.verified.size() >= MAX_CACHED_TOKENS) {
+			key.verified.values().removeIf((exp) -> exp <= now);
+			if (key.verified.size() >= MAX_CACHED_TOKENS)
+				key.verified.clear();
+		}
+		key.verified.put(digest, expiresAt);
+	}
+
+	private String digest(String jwtToken) {
+		try {
+			MessageDigest sha = MessageDigest.getInstance("SHA-256");
+			return Base64.getEncoder().encodeToString(sha.digest(jwtToken.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new GameIntegrityViolationException("Authentication internal error!", e);
+		}
+	}
+
+	/**
+	 * Secret with its verifier and tokens verified with it. Tokens are forgotten
+	 * together with the secret.
+	 */
+	private static class Key {
+
+		private final String secret;
+		private final String owners;
+		private final JWTVerifier verifier;
+		// Digest of the token -> expiration time in milliseconds
+		private final ConcurrentMap<String, Long> verified = new ConcurrentHashMap<>();
+
+		private Key(String secret, String owners) {
+			this.secret = secret;
+			this.owners = owners;
+			this.verifier = JWT.require(Algorithm.HMAC256(secret)).withIssuer("auth0").build();
+		}
+	}
+
+}
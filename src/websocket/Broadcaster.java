@@ -0,0 +1,186 @@
+package websocket;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.websocket.CloseReason;
+import javax.websocket.CloseReason.CloseCodes;
+import javax.websocket.Session;
+
+import db.AppDictionaryService;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import service.Log;
+import websocket.Outbox.Frame;
+
+/**
+ * Non-blocking fan-out of websocket messages. Every session gets its own
+ * {@link Outbox}, so one slow client does not stall the broadcast nor the
+ * sender. It is a singleton and is meant to be injected as a field i.e.
+ * private Broadcaster broadcaster = Broadcaster.getInstance();
+ */
+public class Broadcaster {
+
+	private static final String OUTBOX = "kalambury.outbox";
+
+	private Log log = Log.getLog(Broadcaster.class);
+	private MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+	private final Histogram fanOutTime = metrics.timer("kalambury_broadcast_seconds",
+			"Time of queuing a message for all the recipients.");
+	private final Histogram queueDepth = metrics.histogram("kalambury_outbox_depth",
+			"Number of frames waiting in the outbox of a session when a new one is queued.");
+	private final Counter framesOut = metrics.counter("kalambury_frames_out_total", "Websocket frames sent.");
+	private final Counter bytesOut = metrics.counter("kalambury_bytes_out_total",
+			"Payload bytes of websocket frames sent.");
+	private final Counter slowConsumers = metrics.counter("kalambury_slow_consumers_total",
+			"Sessions disconnected for being too slow.");
+
+	private final SlowConsumerPolicy policy;
+	private final int capacity;
+	private final ExecutorService closer = Executors.newSingleThreadExecutor((r) -> {
+		Thread t = new Thread(r, "slow-consumer-closer");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private static Broadcaster instance;
+
+	private Broadcaster() {
+		this(AppDictionaryService.getInstance());
+	}
+
+	private Broadcaster(AppDictionaryService dictService) {
+		this(SlowConsumerPolicy.fromString(dictService.getSlowConsumerPolicy()), dictService.getOutboxCapacity());
+	}
+
+	/**
+	 * Creates broadcaster independent of the application dictionary, used by
+	 * benchmarks. Application uses the singleton only.
+	 *
+	 * @param policy   what to do when outbox is full
+	 * @param capacity number of frames in the outbox of every session
+	 */
+	Broadcaster(SlowConsumerPolicy policy, int capacity) {
+		this.policy = policy;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Implementation of the singleton pattern. Creates Broadcaster object.
+	 *
+	 * @return instance of Broadcaster
+	 */
+	public static synchronized Broadcaster getInstance() {
+		if (instance == null)
+			instance = new Broadcaster();
+		return instance;
+	}
+
+	/**
+	 * Stops the thread closing slow sessions of the instance if it has been
+	 * created, used on shutdown.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null)
+			instance.closer.shutdownNow();
+	}
+
+	/**
+	 * Creates outbox for newly opened session.
+	 *
+	 * @param session websocket session
+	 */
+	public void open(Session session) {
+		session.getUserProperties().put(OUTBOX, new Outbox(session, policy, capacity, this));
+	}
+
+	/**
+	 * Drops messages queued for closed session.
+	 *
+	 * @param session websocket session
+	 */
+	public void close(Session session) {
+		Outbox outbox = outboxOf(session);
+		if (outbox != null)
+			outbox.close();
+	}
+
+	/**
+	 * Sends message to a single session.
+	 *
+	 * @param session recipient
+	 * @param frame   message
+	 */
+	public void send(Session session, Frame frame) {
+		Outbox outbox = outboxOf(session);
+		if (outbox != null && session.isOpen())
+			outbox.send(frame);
+	}
+
+	/**
+	 * Sends message to all the given sessions.
+	 *
+	 * @param sessions recipients
+	 * @param frame    message
+	 */
+	public void broadcast(Collection<Session> sessions, Frame frame) {
+		broadcast(sessions, null, frame);
+	}
+
+	/**
+	 * Sends message to all the given sessions except one.
+	 *
+	 * @param sessions recipients
+	 * @param except   session to be skipped, usually the sender
+	 * @param frame    message
+	 */
+	public void broadcast(Collection<Session> sessions, Session except, Frame frame) {
+		long start = System.nanoTime();
+		for (Session session : sessions) {
+			if (!session.equals(except))
+				send(session, frame);
+		}
+		fanOutTime.recordSince(start);
+	}
+
+	/**
+	 * Closes session which does not keep up with the messages. Closing is done on
+	 * a separate thread, so the sender is never blocked by the slow client.
+	 *
+	 * @param session slow client
+	 */
+	void disconnectSlowConsumer(Session session) {
+		log.info("Session {} is too slow. Disconnecting...", session.getId());
+		slowConsumers.increment();
+		closer.execute(() -> {
+			try {
+				session.close(new CloseReason(CloseCodes.TRY_AGAIN_LATER, "Too slow."));
+			} catch (IOException e) {
+				log.warn("Cannot close slow session.", e);
+			}
+		});
+	}
+
+	/**
+	 * @param depth number of frames in the outbox including the one just queued
+	 */
+	void queued(int depth) {
+		queueDepth.record(depth);
+	}
+
+	/**
+	 * @param frame frame being sent
+	 */
+	void sent(Frame frame) {
+		framesOut.increment();
+		bytesOut.add(frame.getSize());
+	}
+
+	private Outbox outboxOf(Session session) {
+		return (Outbox) session.getUserProperties().get(OUTBOX);
+	}
+}
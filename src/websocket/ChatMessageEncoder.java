@@ -0,0 +1,87 @@
+package websocket;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.websocket.EncodeException;
+import javax.websocket.Encoder;
+import javax.websocket.EndpointConfig;
+
+import model.ChatMessage;
+import model.ChatMessage.MsgType;
+
+/**
+ * Encodes chat messages to JSON. Uses one shared, thread-safe Jsonb instance
+ * instead of creating one per websocket session. Messages without content
+ * (e.g. CLEAN_CANVAS) are encoded once and reused.
+ */
+public class ChatMessageEncoder implements Encoder.Text<ChatMessage> {
+
+	private static final Jsonb JSONB = JsonbBuilder.create();
+	private static final Map<MsgType, String> CONSTANTS = new EnumMap<>(MsgType.class);
+
+	static {
+		for (MsgType type : new MsgType[] { MsgType.CLEAN_CANVAS, MsgType.CLEAN_WORD_TO_GUESS }) {
+			CONSTANTS.put(type, JSONB.toJson(new ChatMessage(type, "")));
+		}
+	}
+
+	/**
+	 * @param type type of the message without content
+	 * @return pre-encoded message with empty content
+	 */
+	public static String constant(MsgType type) {
+		String json = CONSTANTS.get(type);
+		return json != null ? json : JSONB.toJson(new ChatMessage(type, ""));
+	}
+
+	/**
+	 * @param msg message to be encoded
+	 * @return message as JSON
+	 */
+	public static String toJson(ChatMessage msg) {
+		if (msg.getMsgContent() == null || msg.getMsgContent().isEmpty()) {
+			for (Map.Entry<MsgType, String> constant : CONSTANTS.entrySet()) {
+				if (constant.getKey().getValue().equals(msg.getMsgType()))
+					return constant.getValue();
+			}
+		}
+		return JSONB.toJson(msg);
+	}
+
+	/**
+	 * @param content e.g. list of scores
+	 * @return content as JSON
+	 */
+	public static String contentToJson(Object content) {
+		return JSONB.toJson(content);
+	}
+
+	/**
+	 * @param json incoming message
+	 * @return parsed message
+	 */
+	public static ChatMessage fromJson(String json) {
+		return JSONB.fromJson(json, ChatMessage.class);
+	}
+
+	@Override
+	public String encode(ChatMessage msg) throws EncodeException {
+		try {
+			return toJson(msg);
+		} catch (RuntimeException e) {
+			throw new EncodeException(msg, "Cannot encode chat message.", e);
+		}
+	}
+
+	@Override
+	public void init(EndpointConfig config) {
+	}
+
+	@Override
+	public void destroy() {
+	}
+
+}
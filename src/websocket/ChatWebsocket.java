@@ -2,55 +2,98 @@ package websocket;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.NoSuchElementException;
 
-import javax.json.bind.Jsonb;
-import javax.json.bind.JsonbBuilder;
 import javax.websocket.CloseReason;
 import javax.websocket.CloseReason.CloseCodes;
 import javax.websocket.OnClose;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
+import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
 
-import db.ActiveUserService;
-import db.AppDictionaryService;
-import db.WordService;
 import exception.GameIntegrityViolationException;
-import model.ActiveUser;
+import game.GameCoordinator;
+import game.GameState;
+import game.Room;
+import game.RoomRegistry;
+import metrics.MetricsRegistry;
 import model.ChatMessage;
 import model.ChatMessage.MsgType;
 import model.Score;
+import service.Log;
 import service.LoginUtil;
+import service.TokenVerifier;
+import websocket.Outbox.Frame;
 
 /**
  * This websocket contains main logic of an app. It authenticates user after
  * session is opened, then processes incoming messages. Class is responsible for
  * generating new words to guess and choosing next drawing user. It also
- * produces scoreboard.
+ * produces scoreboard. Every game is played in a room given as a path
+ * parameter, messages are broadcast to members of that room only. Messages are
+ * sent asynchronously by {@link Broadcaster}. Every message is encoded once by
+ * {@link ChatMessageEncoder} and the same frame is sent to all the recipients.
+ * 
+ * Game events, i.e. joins, messages and leaves, are handed over to the
+ * {@link GameCoordinator} of the room and handled one at a time, so two
+ * simultaneous correct guesses cannot both score.
  * 
  * @author Piotr Koodziejski
  */
-@ServerEndpoint("/chat")
+@ServerEndpoint(value = "/chat/{room}", encoders = ChatMessageEncoder.class)
 public class ChatWebsocket {
 
-	private ActiveUserService activeUserService = ActiveUserService.getInstance();
+	private static final Frame CLEAN_CANVAS = Frame.text(ChatMessageEncoder.constant(MsgType.CLEAN_CANVAS));
+	private static final Frame CLEAN_WORD_TO_GUESS = Frame
+			.text(ChatMessageEncoder.constant(MsgType.CLEAN_WORD_TO_GUESS));
+
+	private Log log = Log.getLog(ChatWebsocket.class);
+	private RoomRegistry roomRegistry = RoomRegistry.getInstance();
+	private Broadcaster broadcaster = Broadcaster.getInstance();
 	private LoginUtil loginUtil = LoginUtil.getInstance();
-	private AppDictionaryService dictService = AppDictionaryService.getInstance();
-	private WordService wordService = WordService.getInstance();
-	private Jsonb jsonb;
+	private TokenVerifier tokenVerifier = TokenVerifier.getInstance();
+	private MetricsRegistry metrics = MetricsRegistry.getInstance();
 
 	private String username;
+	private Room room;
+	private GameState gameState;
+	// Scoreboard is broadcast once at the end of handling an event
+	private boolean scoreboardChanged;
 
 	/**
-	 * Initial procedures when websocket session is opened.
+	 * Initial procedures when websocket session is opened. Joins the room, closes
+	 * the session if room name is invalid.
 	 * 
-	 * @param session current session
+	 * @param session  current session
+	 * @param roomName name of the room to join
 	 */
 	@OnOpen
-	public void onOpen(Session session) {
-		jsonb = JsonbBuilder.create();
+	public void onOpen(Session session, @PathParam("room") String roomName) {
+		broadcaster.open(session);
+		try {
+			room = roomRegistry.joinChat(roomName, session);
+			gameState = room.getGameState();
+		} catch (GameIntegrityViolationException e) {
+			log.warn("Invalid room name. Closing session...");
+			try {
+				session.close(new CloseReason(CloseCodes.CANNOT_ACCEPT, "Invalid room."));
+			} catch (IOException e2) {
+				log.warn("Cannot close Chat Websocket.", e2);
+			}
+		}
+	}
+
+	/**
+	 * Queues incoming websocket message to the game coordinator of the room.
+	 * 
+	 * @param s       current websocket session
+	 * @param message incoming message
+	 */
+	@OnMessage
+	public void onMessage(Session s, String message) {
+		if (room != null)
+			room.getCoordinator().submit(() -> onGameMessage(s, message));
 	}
 
 	/**
@@ -64,129 +107,115 @@ public class ChatWebsocket {
 	 * @param s       current websocket session
 	 * @param message incoming message
 	 */
-	@OnMessage
-	public void onMessage(Session s, String message) {
+	private void onGameMessage(Session s, String message) {
 		try {
 			// Is User Active
-			if (activeUserService.isUserActive(s.getId())) {
+			if (gameState.isUserActive(s.getId())) {
 				// Check MsgType
 				processBasedOnMsgType(s, message);
 			} else {
 				// Is Token Valid
-				if (loginUtil.verifyJwt(message, dictService.getSecret(), dictService.getOwners())) {
+				if (tokenVerifier.verify(message)) {
 					// Save username as global variable
 					username = loginUtil.extractUsernameFromToken(message);
 
 					// Mark user as active
-					activeUserService.addActiveUser(username, s.getId());
+					gameState.addActiveUser(username, s.getId());
 
-					// Broadcast scoreboard
-					broadcastScoreboard(s);
+					// Scoreboard has changed
+					scoreboardChanged = true;
 
-					if (activeUserService.doesDrawingUserExist()) {
+					if (gameState.doesDrawingUserExist()) {
 						// Check MsgType
 						processBasedOnMsgType(s, message);
 					} else {
 						// There is no drawing user
-						startGame(s);
+						startGame();
 					}
 				} else {
-					System.out.println("Token invalid. Closing session...");
+					log.info("Token invalid. Closing session...");
 					try {
 						s.close(new CloseReason(CloseCodes.CANNOT_ACCEPT, "Invalid token."));
 					} catch (IOException e) {
-						System.out.println("Cannot close Chat Websocket.");
-						e.printStackTrace();
+						log.warn("Cannot close Chat Websocket.", e);
 					}
 				}
 			}
 		} catch (GameIntegrityViolationException e) {
-			e.printStackTrace();
+			log.error("Game integrity has been violated.", e);
 			try {
 				s.close(new CloseReason(CloseCodes.UNEXPECTED_CONDITION, "Game integrity has been violated."));
 			} catch (IOException e2) {
-				System.out.println("Cannot close Chat Websocket.");
-				e.printStackTrace();
+				log.warn("Cannot close Chat Websocket.", e2);
 			}
+		} finally {
+			broadcastScoreboardIfChanged();
 		}
 	}
 
 	/**
-	 * Method is being invoked when websocket session is closed. It removes user
-	 * from active users. In case drawing user is leaving the game it ensures that
-	 * next drawing user is chosen.
+	 * Method is being invoked when websocket session is closed. It removes the
+	 * session from the room and queues the leave event to the game coordinator of
+	 * the room, container thread does not wait for it.
 	 * 
 	 * @param session current session
-	 * @throws GameIntegrityViolationException in case of error during word
-	 *                                         generation, setting new drawing user,
-	 *                                         setting new word to guess or
-	 *                                         obtaining data from app dictionary.
 	 */
 	@OnClose
-	public void onClose(Session session) throws GameIntegrityViolationException {
-		System.out.println("ChatWebsocket closing session...");
+	public void onClose(Session session) {
+		log.debug("Closing session {}", session.getId());
+		// Leave the room, drop messages not sent yet
+		roomRegistry.leaveChat(room, session);
+		broadcaster.close(session);
+
+		if (gameState != null) {
+			String sessionId = session.getId();
+			room.getCoordinator().submit(() -> onUserLeft(sessionId));
+		}
+	}
+
+	/**
+	 * Leave event. Removes user from active users. In case drawing user has left
+	 * the game, the round is over and next drawing user is chosen right away.
+	 * 
+	 * @param sessionId session id of the user who left
+	 * @throws GameIntegrityViolationException in case of error during word
+	 *                                         generation, setting new drawing user
+	 *                                         or setting new word to guess.
+	 */
+	private void onUserLeft(String sessionId) throws GameIntegrityViolationException {
 		// Mark user as inactive
-		activeUserService.removeActiveUser(session.getId());
+		gameState.removeActiveUser(sessionId);
 
 		// If this was not the last active user
-		if (activeUserService.getActiveUsers().size() > 0) {
-			// Find drawing user. Retry few times in case of GameIntegrityViolationException
-			ActiveUser drawingUser = null;
-
-			int numOfRetry = dictService.getNumberOfRetries();
-			int retryFreq = dictService.getRetryFrequency();
-			for (int i = 0; i != numOfRetry; i++) {
-				try {
-					drawingUser = activeUserService.getActiveDrawingUser();
-				} catch (GameIntegrityViolationException e) {
-					try {
-						Thread.sleep(retryFreq);
-					} catch (InterruptedException e2) {
-						e2.printStackTrace();
-					}
-				}
-			}
-
-			// In case there is no drawing user and this is not the last user, start game
-			// from random user.
-			if (drawingUser == null) {
-				System.err.println("Chat Websocket: on close: unable to get drawing user!");
-				startGame(session);
-			}
+		if (gameState.getNumberOfActiveUsers() > 0) {
+			// In case there is no drawing user start game from random user.
+			if (!gameState.doesDrawingUserExist())
+				startGame();
 
 			// Broadcast scoreboard
-			broadcastScoreboard(session);
-		}
-
-		try {
-			jsonb.close();
-		} catch (Exception e) {
-			System.out.println("Jsonb cannot be closed.");
+			scoreboardChanged = true;
+			broadcastScoreboardIfChanged();
 		}
 	}
 
 	/**
-	 * Broadcast scoreboard to all the users. Display users, their points and
-	 * whether they are drawing or not.
-	 * 
-	 * @param s current websocket session
+	 * Broadcast scoreboard to all the users in the room if it has changed while
+	 * handling current event, so one game transition produces one scoreboard.
+	 * Display users, their points and whether they are drawing or not. Scoreboard
+	 * not yet sent to a slow client may be replaced by the newer one.
 	 */
-	private void broadcastScoreboard(Session s) {
-		List<Score> scores = activeUserService.produceScoreboardForActiveUsers();
-		String scoresJson = jsonb.toJson(scores);
+	private void broadcastScoreboardIfChanged() {
+		if (!scoreboardChanged || gameState == null)
+			return;
+		scoreboardChanged = false;
+
+		List<Score> scores = gameState.produceScoreboard();
+		String scoresJson = ChatMessageEncoder.contentToJson(scores);
 		ChatMessage response = new ChatMessage(MsgType.SCOREBOARD, scoresJson);
-		String responseJson = jsonb.toJson(response);
-		for (Session openedSession : s.getOpenSessions()) {
-			try {
-				if (openedSession.isOpen())
-					openedSession.getBasicRemote().sendText(responseJson);
-			} catch (IOException e) {
-				System.out.println("Chat Websocket: broadcastScoreboard: sending message error.");
-				e.printStackTrace();
-			}
-		}
+		String responseJson = ChatMessageEncoder.toJson(response);
+		broadcaster.broadcast(room.getChatSessions(), Frame.coalescing(responseJson, MsgType.SCOREBOARD.getValue()));
 
-		System.out.println("Chat Websocket: scoreboard has been updated!");
+		log.debug("Scoreboard has been updated in room {}", room.getName());
 	}
 
 	/**
@@ -197,36 +226,43 @@ public class ChatWebsocket {
 	 */
 	private void processBasedOnMsgType(Session s, String message) {
 		if (message == null) {
-			System.out.println("Chat Websocket received null message.");
+			log.debug("Null message received.");
 			return;
 		}
 
-		// Parse received message
-		System.out.println("ChatWebsocket: message precessed: " + message);
-		final ChatMessage msg = jsonb.fromJson(message, ChatMessage.class);
-		System.out.println("[" + msg.getMsgType() + "] Message received: " + msg.getMsgContent());
+		// Parse received message, content is not logged
+		final ChatMessage msg = ChatMessageEncoder.fromJson(message);
+		countMessage(msg.getMsgType());
+		log.debugSampled("[{}] message received in room {}", msg.getMsgType(), room.getName());
 
 		if (msg.getMsgType().equals(MsgType.MESSAGE.getValue())) {
 			processChatMessage(s, msg.getMsgContent());
 		}
 
 		if (msg.getMsgType().equals(MsgType.CLEAN_CANVAS.getValue())) {
-			System.out.println("Clean Canvas!");
+			log.debug("Clean canvas in room {}", room.getName());
 			// Clean canvas for everybody
-			ChatMessage response = new ChatMessage(MsgType.CLEAN_CANVAS, "");
-			String responseJson = jsonb.toJson(response);
-			for (Session openedSession : s.getOpenSessions()) {
-				try {
-					if (openedSession.isOpen())
-						openedSession.getBasicRemote().sendText(responseJson);
-				} catch (IOException e) {
-					System.out.println("Chat Websocket: clean canvas: sending message error.");
-					e.printStackTrace();
-				}
-			}
+			room.getStrokeLog().clear();
+			broadcaster.broadcast(room.getChatSessions(), CLEAN_CANVAS);
 		}
 	}
 
+	/**
+	 * Counts received message by its type. Unknown types are counted together, so
+	 * clients cannot create new metrics.
+	 * 
+	 * @param msgType type of the message
+	 */
+	private void countMessage(String msgType) {
+		String type = "UNKNOWN";
+		for (MsgType known : MsgType.values()) {
+			if (known.getValue().equals(msgType))
+				type = known.getValue();
+		}
+		metrics.counter("kalambury_chat_messages_total", "Chat messages received by type.", "type", type)
+				.increment();
+	}
+
 	/**
 	 * Checks if the word has been guessed. Guessing by drawing user does not count.
 	 * Adds points to winning user in case he guessed the word. Broadcasts messages
@@ -245,63 +281,44 @@ public class ChatWebsocket {
 	 */
 	private void processChatMessage(Session msgSender, String msg) throws GameIntegrityViolationException {
 		// Has word been guessed?
-		if (activeUserService.hasWordBeenGuessed(msg)) {
+		if (gameState.hasWordBeenGuessed(msg)) {
 			// Guessed By Drawing User?
-			String drawingSessionId = activeUserService.getActiveDrawingUser().getChatSessionId();
+			String drawingSessionId = gameState.getDrawingSessionId();
 			String senderSessionId = msgSender.getId();
 			if (senderSessionId.equals(drawingSessionId)) {
 				// It does not count! Pass as regular message.
 				broadcastMessage(msgSender, msg);
 			} else {
+				// Start next round with the winner drawing. Round changes only if it is still
+				// the round of the guessed word, so only one of simultaneous guesses wins.
+				String newWord = room.getWordDeck().next();
+				if (!startNextRound(drawingSessionId, senderSessionId, newWord)) {
+					broadcastMessage(msgSender, msg);
+					return;
+				}
+
 				// Add points to user sending the message
-				activeUserService.addPointsToTheUser(senderSessionId, 1);
+				gameState.addPointsToTheUser(senderSessionId, 1);
 				// Broadcast info about winner
 				ChatMessage response = null;
 				String responseJson = "";
 
 				// Send message to winning user
 				response = new ChatMessage(MsgType.YOU_GUESSED_IT, "Brawo " + username + ", zgade!");
-				responseJson = jsonb.toJson(response);
-				try {
-					msgSender.getBasicRemote().sendText(responseJson);
-				} catch (IOException e) {
-					System.out.println("Chat Websocket: info to winner: sending message error");
-					e.printStackTrace();
-				}
+				responseJson = ChatMessageEncoder.toJson(response);
+				broadcaster.send(msgSender, Frame.text(responseJson));
 
 				// Send messages to other users that the word has been guessed
 				response = new ChatMessage(MsgType.MESSAGE, "Uytkownik " + username + " odgad haso!");
-				responseJson = jsonb.toJson(response);
-				for (Session openedSession : msgSender.getOpenSessions()) {
-					if (!openedSession.equals(msgSender)) {
-						try {
-							if (openedSession.isOpen())
-								openedSession.getBasicRemote().sendText(responseJson);
-						} catch (IOException e) {
-							System.out.println("Chat Websocket: broadcast winner info: sending message error");
-							e.printStackTrace();
-						}
-					}
-				}
+				responseJson = ChatMessageEncoder.toJson(response);
+				broadcaster.broadcast(room.getChatSessions(), msgSender, Frame.text(responseJson));
 
 				// Broadcast cleaning canvas
-				response = new ChatMessage(MsgType.CLEAN_CANVAS, "");
-				responseJson = jsonb.toJson(response);
-				for (Session openedSession : msgSender.getOpenSessions()) {
-					try {
-						if (openedSession.isOpen())
-							openedSession.getBasicRemote().sendText(responseJson);
-					} catch (IOException e) {
-						System.out.println("Chat Websocket: clean canvas for all: sending message error");
-						e.printStackTrace();
-					}
-				}
-
-				// Continue game, user who guessed the word is not drawing
-				continueGameWithWinner(msgSender);
+				room.getStrokeLog().clear();
+				broadcaster.broadcast(room.getChatSessions(), CLEAN_CANVAS);
 
-				// Broadcast scoreboard
-				broadcastScoreboard(msgSender);
+				// Continue game, user who guessed the word is drawing now
+				announceNewRound(senderSessionId, newWord);
 			}
 		} else {
 			broadcastMessage(msgSender, msg);
@@ -316,113 +333,83 @@ public class ChatWebsocket {
 	 */
 	private void broadcastMessage(Session s, String msg) {
 		ChatMessage response = new ChatMessage(MsgType.MESSAGE, username + ": " + msg);
-		String responseJson = jsonb.toJson(response);
-		for (Session openedSession : s.getOpenSessions()) {
-			try {
-				if (openedSession.isOpen())
-					openedSession.getBasicRemote().sendText(responseJson);
-			} catch (IOException e) {
-				System.out.println("Chat Websocket: pass regular message: sending message error");
-				e.printStackTrace();
-			}
-		}
+		String responseJson = ChatMessageEncoder.toJson(response);
+		broadcaster.broadcast(room.getChatSessions(), Frame.text(responseJson));
 	}
 
 	/**
 	 * Starting game means choosing random user and sending him random word to
 	 * guess. Game is started when there was no previous drawing user i.e. it is
-	 * first user in the game or drawing user has left the game.
+	 * first user in the game or drawing user has left the game. Nothing happens
+	 * if another user has started the game in the meantime.
 	 * 
-	 * @param s current websocket session
 	 * @throws GameIntegrityViolationException in case of error during word
 	 *                                         generation, setting new drawing user
 	 *                                         or setting new word to guess.
 	 */
-	private void startGame(Session s) throws GameIntegrityViolationException {
+	private void startGame() throws GameIntegrityViolationException {
 		// Get random active user to draw
-		ActiveUser newDrawingUser = activeUserService.getRandomActiveUser();
+		String newDrawingUser = gameState.getRandomActiveSessionId();
 
-		// Get random word
-		String newWord = wordService.getRandomWord();
+		// Get next word from the deck of the room
+		String newWord = room.getWordDeck().next();
 
-		// Set new drawing user in database. Set also new word to guess
-		activeUserService.setDrawingUserAndNewWord(newDrawingUser, newWord);
+		// Set new drawing user. Set also new word to guess
+		if (!startNextRound(null, newDrawingUser, newWord))
+			return;
 
-		// Clean word to guess for all
-		ChatMessage response = new ChatMessage(MsgType.CLEAN_WORD_TO_GUESS, "");
-		String responseJson = jsonb.toJson(response);
-		for (Session openedSession : s.getOpenSessions()) {
-			try {
-				if (openedSession.isOpen())
-					openedSession.getBasicRemote().sendText(responseJson);
-			} catch (IOException e) {
-				System.out.println("Chat Websocket: clean word to guess: sending message error");
-				e.printStackTrace();
-			}
-		}
+		announceNewRound(newDrawingUser, newWord);
+	}
 
-		// Notify new drawing user and send him word to draw
-		ChatMessage msg = new ChatMessage(MsgType.WORD_TO_GUESS, newWord);
-		String msgJson = jsonb.toJson(msg);
-
-		for (Session openedSession : s.getOpenSessions()) {
-			if (openedSession.getId().equals(newDrawingUser.getChatSessionId())) {
-				try {
-					if (openedSession.isOpen())
-						openedSession.getBasicRemote().sendText(msgJson);
-				} catch (IOException e) {
-					System.out.println("Chat Websocket: send word to guess: sending message error");
-					e.printStackTrace();
-				}
-			}
+	/**
+	 * Starts next round, the word goes back to the deck of the room if another
+	 * user has started the round in the meantime. Word which cannot be set is
+	 * dropped, otherwise it would be dealt again for every next round.
+	 *
+	 * @param previousDrawingUser session id of the drawing user of the round to
+	 *                            be replaced, null if there should be none
+	 * @param newDrawingUser      session id of the new drawing user
+	 * @param newWord             word dealt from the deck of the room
+	 * @return false if the round has been changed by somebody else
+	 * @throws GameIntegrityViolationException when either user is inactive or
+	 *                                         word is invalid
+	 */
+	private boolean startNextRound(String previousDrawingUser, String newDrawingUser, String newWord)
+			throws GameIntegrityViolationException {
+		boolean started;
+		try {
+			started = gameState.startNextRound(previousDrawingUser, newDrawingUser, newWord);
+		} catch (GameIntegrityViolationException e) {
+			log.warn("Word dropped, round has not been started: {}", newWord);
+			throw e;
 		}
-
-		// Broadcast scoreboard
-		broadcastScoreboard(s);
+		if (!started)
+			room.getWordDeck().putBack(newWord);
+		return started;
 	}
 
 	/**
-	 * Continuing game means the next drawing user is the user who won last turn.
+	 * Notifies users about new round. New drawing user gets the word to draw.
 	 * 
-	 * @param winner user who guessed previous word
+	 * @param newDrawingUser session id of the drawing user
+	 * @param newWord        word to draw
 	 */
-	private void continueGameWithWinner(Session winner) {
-		// Get winner by his session id
-		ActiveUser newDrawingUser = activeUserService.getActiveUserBySessionId(winner.getId());
-
-		// Get random word
-		String newWord = wordService.getRandomWord();
-
-		// Set new drawing user in database. Set also new word to guess
-		activeUserService.setDrawingUserAndNewWord(newDrawingUser, newWord);
+	private void announceNewRound(String newDrawingUser, String newWord) {
+		room.getStrokeLog().clear();
 
 		// Clean word to guess for all
-		ChatMessage response = new ChatMessage(MsgType.CLEAN_WORD_TO_GUESS, "");
-		String responseJson = jsonb.toJson(response);
-		for (Session openedSession : winner.getOpenSessions()) {
-			try {
-				if (openedSession.isOpen())
-					openedSession.getBasicRemote().sendText(responseJson);
-			} catch (IOException e) {
-				System.out.println("Chat Websocket: clean word to guess: sending message error");
-				e.printStackTrace();
-			}
-		}
+		broadcaster.broadcast(room.getChatSessions(), CLEAN_WORD_TO_GUESS);
 
 		// Notify new drawing user and send him word to draw
 		ChatMessage msg = new ChatMessage(MsgType.WORD_TO_GUESS, newWord);
-		String msgJson = jsonb.toJson(msg);
-		try {
-			Session newDrawing = winner.getOpenSessions().stream()
-					.filter((session) -> session.getId().equals(newDrawingUser.getChatSessionId())).findFirst().get();
-			newDrawing.getBasicRemote().sendText(msgJson);
-		} catch (NoSuchElementException e) {
-			throw new GameIntegrityViolationException("Cannot choose non-existing user for drawing!", e);
-		} catch (IOException e) {
-			throw new GameIntegrityViolationException("New drawing user was not set properly!", e);
+		String msgJson = ChatMessageEncoder.toJson(msg);
+
+		for (Session openedSession : room.getChatSessions()) {
+			if (openedSession.getId().equals(newDrawingUser))
+				broadcaster.send(openedSession, Frame.text(msgJson));
 		}
 
-		// Broadcast scoreboard
-		broadcastScoreboard(winner);
+		// Scoreboard has changed
+		scoreboardChanged = true;
 	}
 }
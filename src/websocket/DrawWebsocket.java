@@ -1,8 +1,10 @@
 package websocket;
 
 import java.io.IOException;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import javax.websocket.CloseReason;
 import javax.websocket.CloseReason.CloseCodes;
@@ -10,34 +12,72 @@ import javax.websocket.OnClose;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
+import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
 
 import db.AppDictionaryService;
-import service.LoginUtil;
+import exception.InvalidStrokeException;
+import game.Room;
+import game.RoomRegistry;
+import game.StrokeLog;
+import metrics.Counter;
+import metrics.MetricsRegistry;
+import model.Polyline;
+import service.Log;
+import service.TokenVerifier;
+import service.StrokeCodec;
+import websocket.Outbox.Frame;
 
 /**
- * Websocket used for passing drawn image to other users.
- * 
+ * Websocket used for passing drawn image to other users in the same room.
+ * Strokes are collected by {@link StrokeBatcher} and relayed asynchronously by
+ * {@link Broadcaster}, a slow viewer does not hold back the drawing user.
+ *
+ * Client chooses the format of the strokes with format request parameter:
+ * /draw/{room}?format=binary for compact binary format (see StrokeCodec),
+ * otherwise one JSON DrawingMessage per message with the exact color, as
+ * before the binary format. Client may send strokes in either format, single
+ * JSON DrawingMessage or binary frame. Batch is converted at most once per
+ * format no matter how many users are in the room.
+ *
  * @author Maciej Szabaa
  *
  */
-@ServerEndpoint("/draw")
+@ServerEndpoint("/draw/{room}")
 public class DrawWebsocket {
 
+	static final String BINARY_FORMAT = "kalambury.binaryFormat";
+
+	private Log log = Log.getLog(DrawWebsocket.class);
 	private AppDictionaryService dictService = AppDictionaryService.getInstance();
-	private LoginUtil loginUtil = LoginUtil.getInstance();
+	private TokenVerifier tokenVerifier = TokenVerifier.getInstance();
+	private RoomRegistry roomRegistry = RoomRegistry.getInstance();
+	private Broadcaster broadcaster = Broadcaster.getInstance();
+	private StrokeCodec strokeCodec = StrokeCodec.getInstance();
+	private MetricsRegistry metrics = MetricsRegistry.getInstance();
+	private Counter received = metrics.counter("kalambury_draw_frames_received_total",
+			"Stroke frames received from drawing users.");
 	private Session session;
+	private String roomName;
+	private Room room;
+	private StrokeBatcher batcher;
 	private boolean isNewSession;
-	private static Set<DrawWebsocket> endpoints = new CopyOnWriteArraySet<>();
 
 	@OnOpen
-	public void onOpen(Session session) throws IOException {
+	public void onOpen(Session session, @PathParam("room") String roomName) throws IOException {
 		this.session = session;
 		isNewSession = true;
-		if (!endpoints.add(this)) {
-			System.out.println("Session already exists!");
+		List<String> format = session.getRequestParameterMap().get("format");
+		session.getUserProperties().put(BINARY_FORMAT, format != null && format.contains("binary"));
+		broadcaster.open(session);
+		// Room is joined after authentication, strokes are not sent to unknown users
+		if (roomRegistry.isRoomNameInvalid(roomName)) {
+			log.warn("Invalid room name. Closing session...");
+			session.close(new CloseReason(CloseCodes.CANNOT_ACCEPT, "Invalid room."));
+			return;
 		}
-		System.out.println("New draw session: " + session.getId() + " (all sessions: " + endpoints.size() + ")");
+		this.roomName = roomName;
+		log.debug("New draw session: {} (room {})", session.getId(), roomName);
 	}
 
 	@OnMessage
@@ -45,31 +85,112 @@ public class DrawWebsocket {
 		// New session, expecting token in the message
 		// Allow websocket connection only if the token is valid
 		if (isNewSession) {
-			if (loginUtil.verifyJwt(message, dictService.getSecret(), dictService.getOwners())) {
-				System.out.println("DrawWebsocket: Token valid");
+			if (tokenVerifier.verify(message)) {
+				log.debug("Token valid");
 				isNewSession = false;
+				join(s);
 			} else {
-				System.out.println("DrawWebsocket: Token invalid. Closing session...");
+				log.info("Token invalid. Closing session...");
 				s.close(new CloseReason(CloseCodes.CANNOT_ACCEPT, "Invalid token."));
 			}
 			return;
 		}
-		endpoints.forEach(endpoint -> {
-			synchronized (endpoint) {
-				try {
-					if (!endpoint.equals(this))
-						endpoint.session.getBasicRemote().sendText(message);
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
-			}
-		});
+
+		received.increment();
+		try {
+			batcher.add(Collections.singletonList(strokeCodec.toPolyline(strokeCodec.fromJson(message))));
+		} catch (InvalidStrokeException e) {
+			log.debugSampled("Invalid drawing message dropped in room {}", room.getName());
+		}
+	}
+
+	/**
+	 * Relays stroke in binary format. Frame is decoded right away, the container
+	 * may reuse the buffer after this method returns.
+	 *
+	 * @param s       current websocket session
+	 * @param message binary stroke frame
+	 * @throws IOException when session cannot be closed
+	 */
+	@OnMessage
+	public void onMessage(Session s, ByteBuffer message) throws IOException {
+		if (isNewSession) {
+			log.info("Token expected. Closing session...");
+			s.close(new CloseReason(CloseCodes.CANNOT_ACCEPT, "Invalid token."));
+			return;
+		}
+
+		received.increment();
+		List<Polyline> polylines;
+		try {
+			polylines = strokeCodec.decode(message);
+		} catch (InvalidStrokeException e) {
+			log.debugSampled("Invalid binary stroke dropped in room {}", room.getName());
+			return;
+		}
+		batcher.add(polylines);
 	}
 
 	@OnClose
 	public void onClose(Session session) {
-		System.out.println("DrawWebsocket: Closing session...");
+		log.debug("Closing session {}", session.getId());
 		this.isNewSession = true;
-		endpoints.remove(this);
+		if (batcher != null)
+			batcher.flush();
+		roomRegistry.leaveDraw(room, session);
+		broadcaster.close(session);
+	}
+
+	/**
+	 * Joins the room with the newly authenticated session and sends it the
+	 * current drawing. Strokes of the others are sent to the session from now on.
+	 *
+	 * @param s newly authenticated draw session
+	 */
+	private void join(Session s) {
+		room = roomRegistry.joinDraw(roomName, s, (joined) -> sendStrokeLog(s, joined));
+		batcher = new StrokeBatcher(s, room, dictService.getStrokeFlushInterval(), dictService.getStrokeBatchSize(),
+				broadcaster, strokeCodec);
+	}
+
+	/**
+	 * Sends the current drawing in one frame, so the user joining in the middle
+	 * of the round does not see a blank canvas. Called under the lock of the
+	 * stroke log.
+	 *
+	 * @param s    newly authenticated draw session
+	 * @param room room joined
+	 */
+	private void sendStrokeLog(Session s, Room room) {
+		StrokeLog log = room.getStrokeLog();
+		if (log.isEmpty())
+			return;
+		List<Polyline> drawing = log.snapshot();
+		if (isBinary(s)) {
+			broadcaster.send(s, Frame.binary(strokeCodec.encode(drawing)));
+		} else {
+			// Segments of a large drawing may be dropped when the client is too slow
+			for (Frame frame : jsonStrokes(strokeCodec.toJsonMessages(drawing)))
+				broadcaster.send(s, frame);
+		}
+	}
+
+	/**
+	 * @param messages JSON drawing messages
+	 * @return droppable frame per message, shared by all the JSON peers
+	 */
+	static List<Frame> jsonStrokes(List<String> messages) {
+		List<Frame> frames = new ArrayList<>(messages.size());
+		for (String message : messages)
+			frames.add(Frame.stroke(message));
+		return frames;
+	}
+
+	/**
+	 * @param peer draw session
+	 * @return true if the session receives strokes in binary format
+	 */
+	static boolean isBinary(Session peer) {
+		return Boolean.TRUE.equals(peer.getUserProperties().get(BINARY_FORMAT));
 	}
 }
@@ -0,0 +1,288 @@
+package websocket;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import service.Log;
+
+/**
+ * Bounded outbound queue of a single websocket session. Messages are sent
+ * asynchronously one at a time, the next one is sent when the previous one
+ * has been written. Sender never waits for the client nor for other senders,
+ * it only appends the message to the lock-free queue. Whoever wins the sending
+ * flag transmits the next message. When the queue is full
+ * {@link SlowConsumerPolicy} decides what to do.
+ */
+public class Outbox implements SendHandler {
+
+	private Log log = Log.getLog(Outbox.class);
+
+	private final Session session;
+	private final SlowConsumerPolicy policy;
+	private final int capacity;
+	private final Broadcaster broadcaster;
+
+	private final Queue<Frame> queue = new ConcurrentLinkedQueue<>();
+	// Size of the queue, ConcurrentLinkedQueue.size() is not constant-time
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicBoolean sending = new AtomicBoolean();
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	Outbox(Session session, SlowConsumerPolicy policy, int capacity, Broadcaster broadcaster) {
+		this.session = session;
+		this.policy = policy;
+		this.capacity = capacity;
+		this.broadcaster = broadcaster;
+	}
+
+	/**
+	 * Queues the frame. Starts sending if nothing is being sent at the moment.
+	 *
+	 * @param frame frame to be sent
+	 */
+	public void send(Frame frame) {
+		if (closed.get())
+			return;
+		if (!offer(frame)) {
+			if (closed.compareAndSet(false, true)) {
+				clear();
+				broadcaster.disconnectSlowConsumer(session);
+			}
+			return;
+		}
+		if (closed.get()) {
+			// Outbox was closed after the check above, the frame was added after clear
+			clear();
+			return;
+		}
+		transmitNext();
+	}
+
+	/**
+	 * Invoked by the container when previous frame has been written. Sends the
+	 * next queued frame.
+	 */
+	@Override
+	public void onResult(SendResult result) {
+		if (!result.isOK()) {
+			// Usually the peer has just disconnected, no need for the stack trace
+			log.info("Sending message to {} failed: {}", session.getId(), result.getException());
+		}
+		Frame next = poll();
+		if (next != null) {
+			transmit(next);
+			return;
+		}
+		sending.set(false);
+		// Frame might have been queued after poll but before the flag was cleared
+		transmitNext();
+	}
+
+	/**
+	 * Drops queued frames, nothing is sent after the outbox is closed.
+	 */
+	public void close() {
+		closed.set(true);
+		clear();
+	}
+
+	/**
+	 * @return number of frames waiting to be sent
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * Transmits the next frame unless another thread is already sending or the
+	 * outbox is closed.
+	 */
+	private void transmitNext() {
+		while (!closed.get() && !queue.isEmpty() && sending.compareAndSet(false, true)) {
+			Frame next = poll();
+			if (next != null) {
+				transmit(next);
+				return;
+			}
+			sending.set(false);
+		}
+	}
+
+	private void transmit(Frame frame) {
+		if (!session.isOpen()) {
+			close();
+			onResult(new SendResult());
+			return;
+		}
+		broadcaster.sent(frame);
+		try {
+			if (frame.isBinary())
+				session.getAsyncRemote().sendBinary(frame.getBinary(), this);
+			else
+				session.getAsyncRemote().sendText(frame.getText(), this);
+		} catch (RuntimeException e) {
+			onResult(new SendResult(e));
+		}
+	}
+
+	private Frame poll() {
+		if (closed.get())
+			return null;
+		Frame frame = queue.poll();
+		if (frame != null)
+			size.decrementAndGet();
+		return frame;
+	}
+
+	private void clear() {
+		while (queue.poll() != null)
+			size.decrementAndGet();
+	}
+
+	/**
+	 * Appends the frame to the queue according to the policy. Capacity is not
+	 * exact when many threads offer at once, it may be exceeded by the number of
+	 * concurrent senders.
+	 *
+	 * @param frame frame to be queued
+	 * @return false if the frame could not be queued and the client should be
+	 *         disconnected
+	 */
+	private boolean offer(Frame frame) {
+		if (policy == SlowConsumerPolicy.COALESCE && frame.getCoalesceKey() != null)
+			removeFirst((queued) -> frame.getCoalesceKey().equals(queued.getCoalesceKey()));
+
+		if (size.get() >= capacity) {
+			if (policy == SlowConsumerPolicy.DISCONNECT || !removeFirst(Frame::isDroppable))
+				return false;
+		}
+		broadcaster.queued(size.incrementAndGet());
+		queue.add(frame);
+		return true;
+	}
+
+	private boolean removeFirst(Predicate<Frame> predicate) {
+		for (Frame queued : queue) {
+			// Frame could have been sent or removed by another thread in the meantime
+			if (predicate.test(queued) && queue.remove(queued)) {
+				size.decrementAndGet();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Message to be sent. Strokes are droppable, losing one of them only makes
+	 * the drawing less accurate. Frames with the same coalesce key supersede each
+	 * other, e.g. only the latest scoreboard matters. Binary frame is shared by
+	 * all the recipients, each of them reads it through its own view.
+	 */
+	public static class Frame {
+
+		private final String text;
+		private final ByteBuffer binary;
+		private final boolean droppable;
+		private final String coalesceKey;
+		private final int size;
+
+		private Frame(String text, ByteBuffer binary, boolean droppable, String coalesceKey) {
+			this.text = text;
+			this.binary = binary;
+			this.droppable = droppable;
+			this.coalesceKey = coalesceKey;
+			this.size = binary != null ? binary.remaining() : utf8Length(text);
+		}
+
+		/**
+		 * @param text message
+		 * @return frame which cannot be dropped
+		 */
+		public static Frame text(String text) {
+			return new Frame(text, null, false, null);
+		}
+
+		/**
+		 * @param text        message
+		 * @param coalesceKey key of messages superseding each other
+		 * @return frame which can be replaced by a newer one with the same key
+		 */
+		public static Frame coalescing(String text, String coalesceKey) {
+			return new Frame(text, null, false, coalesceKey);
+		}
+
+		/**
+		 * @param text stroke message
+		 * @return frame which can be dropped
+		 */
+		public static Frame stroke(String text) {
+			return new Frame(text, null, true, null);
+		}
+
+		/**
+		 * @param binary binary message, must not be modified afterwards
+		 * @return frame which cannot be dropped
+		 */
+		public static Frame binary(ByteBuffer binary) {
+			return new Frame(null, binary, false, null);
+		}
+
+		/**
+		 * @param binary binary stroke message, must not be modified afterwards
+		 * @return frame which can be dropped
+		 */
+		public static Frame binaryStroke(ByteBuffer binary) {
+			return new Frame(null, binary, true, null);
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		/**
+		 * @return view of the binary message with its own position
+		 */
+		public ByteBuffer getBinary() {
+			return binary.duplicate();
+		}
+
+		public boolean isBinary() {
+			return binary != null;
+		}
+
+		public boolean isDroppable() {
+			return droppable;
+		}
+
+		public String getCoalesceKey() {
+			return coalesceKey;
+		}
+
+		/**
+		 * @return size of the payload in bytes, computed once for all the recipients
+		 */
+		public int getSize() {
+			return size;
+		}
+
+		private static int utf8Length(String text) {
+			int length = text.length();
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if (c >= 0x800 && !Character.isSurrogate(c))
+					length += 2;
+				else if (c >= 0x80)
+					length += 1;
+			}
+			return length;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package websocket;
+
+/**
+ * Decides what happens when outbound queue of a session is full, i.e. client
+ * does not keep up with the messages sent to it.
+ */
+public enum SlowConsumerPolicy {
+
+	/**
+	 * Oldest queued stroke is dropped. Client is disconnected if there is no
+	 * stroke to drop.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * Queued message superseded by the new one (e.g. older scoreboard) is
+	 * replaced. Otherwise behaves like DROP_OLDEST.
+	 */
+	COALESCE,
+
+	/**
+	 * Client is disconnected.
+	 */
+	DISCONNECT;
+
+	/**
+	 * @param value name of the policy
+	 * @return policy with given name, DROP_OLDEST if name is unknown
+	 */
+	public static SlowConsumerPolicy fromString(String value) {
+		for (SlowConsumerPolicy policy : values()) {
+			if (policy.name().equalsIgnoreCase(value == null ? "" : value.trim()))
+				return policy;
+		}
+		return DROP_OLDEST;
+	}
+}
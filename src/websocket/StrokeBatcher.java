@@ -0,0 +1,145 @@
+package websocket;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.Session;
+
+import game.Room;
+import game.StrokeLog;
+import metrics.Counter;
+import metrics.MetricsRegistry;
+import model.Polyline;
+import service.StrokeBatch;
+import service.StrokeCodec;
+import websocket.Outbox.Frame;
+
+/**
+ * Collects strokes of a single drawing session and sends them to the other
+ * users in the room at most once per flush interval. Segments of a continuous
+ * line are joined into one polyline, so a fast drawer produces a few frames
+ * per second per viewer instead of hundreds. Batch is sent earlier when it
+ * reaches the maximal number of points. Every batch is appended to the stroke
+ * log of the room.
+ */
+public class StrokeBatcher {
+
+	private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor((r) -> {
+		Thread t = new Thread(r, "stroke-flusher");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private final Session sender;
+	private final Room room;
+	private final int flushInterval;
+	private final int batchSize;
+	private final Broadcaster broadcaster;
+	private final StrokeCodec strokeCodec;
+	private final Counter relayed = MetricsRegistry.getInstance().counter("kalambury_draw_frames_relayed_total",
+			"Stroke frames queued for the viewers.");
+
+	// Guarded by this. Frames are queued under the lock, so batches never
+	// overtake each other.
+	private final StrokeBatch batch = new StrokeBatch();
+	private ScheduledFuture<?> scheduledFlush;
+
+	/**
+	 * @param sender        drawing session
+	 * @param room          room of the drawing session
+	 * @param flushInterval milliseconds between flushes, 0 disables batching
+	 * @param batchSize     number of points flushed without waiting
+	 * @param broadcaster   broadcaster sending the batches
+	 * @param strokeCodec   codec encoding the batches
+	 */
+	StrokeBatcher(Session sender, Room room, int flushInterval, int batchSize, Broadcaster broadcaster,
+			StrokeCodec strokeCodec) {
+		this.sender = sender;
+		this.room = room;
+		this.flushInterval = flushInterval;
+		this.batchSize = batchSize;
+		this.broadcaster = broadcaster;
+		this.strokeCodec = strokeCodec;
+	}
+
+	/**
+	 * Stops the thread flushing the batches, used on shutdown.
+	 */
+	public static void shutdown() {
+		flusher.shutdownNow();
+	}
+
+	/**
+	 * Adds strokes to the current batch. Schedules the flush if the batch has
+	 * just been started.
+	 *
+	 * @param polylines strokes drawn by the sender
+	 */
+	public synchronized void add(List<Polyline> polylines) {
+		for (Polyline polyline : polylines)
+			batch.add(polyline);
+		if (flushInterval <= 0 || batch.getPointCount() >= batchSize)
+			flush();
+		else if (scheduledFlush == null)
+			scheduledFlush = flusher.schedule(this::flush, flushInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sends the current batch to the other users in the room. Every format is
+	 * encoded at most once per batch.
+	 */
+	public synchronized void flush() {
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		if (batch.isEmpty())
+			return;
+
+		List<Polyline> polylines = batch.drain();
+		StrokeLog log = room.getStrokeLog();
+		// New user gets either the batch in the log or the batch itself, never both
+		synchronized (log) {
+			log.append(polylines);
+			relayed.add(fanOut(polylines, room.getDrawSessions(), sender, broadcaster, strokeCodec));
+		}
+	}
+
+	/**
+	 * Queues the strokes for every peer except the sender, in the format of the
+	 * peer. Every format is encoded at most once.
+	 *
+	 * @param polylines   strokes to be sent
+	 * @param peers       draw sessions of the room
+	 * @param sender      drawing session, skipped
+	 * @param broadcaster broadcaster queuing the frames
+	 * @param strokeCodec codec encoding the strokes
+	 * @return number of peers the strokes have been queued for
+	 */
+	static int fanOut(List<Polyline> polylines, Iterable<Session> peers, Session sender, Broadcaster broadcaster,
+			StrokeCodec strokeCodec) {
+		Frame binary = null;
+		List<Frame> json = null;
+		int relayed = 0;
+		for (Session peer : peers) {
+			if (peer.equals(sender))
+				continue;
+			if (DrawWebsocket.isBinary(peer)) {
+				if (binary == null)
+					binary = Frame.binaryStroke(strokeCodec.encode(polylines));
+				broadcaster.send(peer, binary);
+			} else {
+				if (json == null)
+					json = DrawWebsocket.jsonStrokes(strokeCodec.toJsonMessages(polylines));
+				for (Frame frame : json)
+					broadcaster.send(peer, frame);
+			}
+			relayed++;
+		}
+		return relayed;
+	}
+
+}
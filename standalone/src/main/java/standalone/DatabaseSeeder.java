@@ -0,0 +1,93 @@
+package standalone;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import db.Database;
+import model.AppDictionary;
+import model.Word;
+import service.Log;
+
+/**
+ * Fills an empty database, i.e. a new H2 one, with the application dictionary
+ * and the words. Dictionary is read from the inserts in sql/kalambury.sql, so
+ * a new key added there is seeded too. Both files are bundled in the jar.
+ */
+class DatabaseSeeder {
+
+	private static final String DICTIONARY_SQL = "/seed/sql/kalambury.sql";
+	private static final String WORDS = "/seed/files/words.txt";
+	private static final Charset WORDS_CHARSET = Charset.forName("windows-1250");
+	private static final Pattern DICTIONARY_INSERT = Pattern.compile(
+			"insert into public\\.sownik_aplikacji \\(klucz, warto\\)\\s*values \\('([^']*)', '([^']*)'\\);");
+
+	private Log log = Log.getLog(DatabaseSeeder.class);
+	private Database db = Database.getInstance();
+
+	/**
+	 * Inserts dictionary and words unless the tables already contain data.
+	 *
+	 * @throws IOException when bundled files cannot be read
+	 */
+	void seed() throws IOException {
+		long entries = db.read("DatabaseSeeder.countDictionary",
+				(em) -> em.createQuery("SELECT COUNT(d) FROM AppDictionary d", Long.class).getSingleResult());
+		if (entries == 0) {
+			Map<String, String> dictionary = readDictionary();
+			db.inTransaction("DatabaseSeeder.seedDictionary",
+					(em) -> dictionary.forEach((key, value) -> em.persist(new AppDictionary(key, value))));
+			log.info("{} dictionary entries inserted.", dictionary.size());
+		}
+
+		long words = db.read("DatabaseSeeder.countWords",
+				(em) -> em.createQuery("SELECT COUNT(w) FROM Word w", Long.class).getSingleResult());
+		if (words == 0) {
+			List<String> list = readWords();
+			db.inTransaction("DatabaseSeeder.seedWords", (em) -> list.forEach((word) -> em.persist(new Word(word))));
+			log.info("{} words inserted.", list.size());
+		}
+	}
+
+	private Map<String, String> readDictionary() throws IOException {
+		String sql;
+		try (BufferedReader reader = open(DICTIONARY_SQL, StandardCharsets.UTF_8)) {
+			sql = reader.lines().collect(Collectors.joining("\n"));
+		}
+		Map<String, String> dictionary = new LinkedHashMap<>();
+		Matcher insert = DICTIONARY_INSERT.matcher(sql);
+		while (insert.find())
+			dictionary.put(insert.group(1), insert.group(2));
+		return dictionary;
+	}
+
+	private List<String> readWords() throws IOException {
+		List<String> words = new ArrayList<>();
+		try (BufferedReader reader = open(WORDS, WORDS_CHARSET)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.trim().isEmpty())
+					words.add(line.trim());
+			}
+		}
+		return words;
+	}
+
+	private static BufferedReader open(String resource, Charset charset) throws IOException {
+		InputStream in = DatabaseSeeder.class.getResourceAsStream(resource);
+		if (in == null)
+			throw new IOException(resource + " is not bundled.");
+		return new BufferedReader(new InputStreamReader(in, charset));
+	}
+
+}
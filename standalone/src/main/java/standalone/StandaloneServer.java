@@ -0,0 +1,145 @@
+package standalone;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.websocket.jsr356.server.deploy.WebSocketServerContainerInitializer;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.servlet.ServletContainer;
+
+import db.AppDictionaryService;
+import game.GameLifecycleListener;
+import rest.LoginRest;
+import rest.MetricsRest;
+import service.Log;
+import websocket.ChatWebsocket;
+import websocket.DrawWebsocket;
+
+/**
+ * Runs the application without an application server: embedded Jetty serves
+ * the websockets, the REST endpoints and WebContent under the same
+ * /KalamburyPro context the WAR is deployed to, so the pages work unchanged.
+ * Database is H2, in memory by default or in a file, and is filled with the
+ * dictionary and the words on first start. Any database may be used instead by
+ * setting javax.persistence.jdbc.* system properties.
+ *
+ * Usage: java -jar kalambury.jar [--port 8080] [--db mem|path/to/file]
+ * [--web-content path/to/WebContent]
+ */
+public class StandaloneServer {
+
+	private static final String CONTEXT_PATH = "/KalamburyPro";
+	private static final String JDBC = "javax.persistence.jdbc.";
+	private static final String USAGE = "Usage: java -jar kalambury.jar [--port 8080] [--db mem|path/to/file] "
+			+ "[--web-content path/to/WebContent]";
+
+	private Log log = Log.getLog(StandaloneServer.class);
+	private Server server;
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		options.put("port", "8080");
+		options.put("db", "mem");
+		for (int i = 0; i < args.length; i += 2) {
+			String name = args[i].replaceFirst("^--", "");
+			if (i + 1 == args.length || (!options.containsKey(name) && !name.equals("web-content"))) {
+				System.err.println(USAGE);
+				System.exit(2);
+			}
+			options.put(name, args[i + 1]);
+		}
+
+		StandaloneServer standalone = new StandaloneServer();
+		standalone.start(Integer.parseInt(options.get("port")), options.get("db"), options.get("web-content"));
+		Runtime.getRuntime().addShutdownHook(new Thread(standalone::stop, "standalone-shutdown"));
+		standalone.server.join();
+	}
+
+	/**
+	 * Prepares the database and starts the server.
+	 *
+	 * @param port       HTTP port
+	 * @param database   mem for in-memory database, otherwise path of the
+	 *                   database file
+	 * @param webContent directory with the static files, files bundled in the
+	 *                   jar when null
+	 * @throws Exception when the server cannot be started
+	 */
+	public void start(int port, String database, String webContent) throws Exception {
+		long start = System.nanoTime();
+		useDatabase(database);
+		new DatabaseSeeder().seed();
+		// Load the dictionary now rather than on the first login
+		AppDictionaryService.getInstance().snapshot();
+
+		server = new Server(port);
+		ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+		context.setContextPath(CONTEXT_PATH);
+		context.setBaseResource(webContent != null ? Resource.newResource(webContent)
+				: Resource.newClassPathResource("/webapp"));
+		context.setWelcomeFiles(new String[] { "index.html" });
+		context.addEventListener(new GameLifecycleListener());
+
+		// Resources are listed, scanning the classpath would slow the startup down
+		ServletHolder rest = new ServletHolder("rest",
+				new ServletContainer(new ResourceConfig(LoginRest.class, MetricsRest.class)));
+		rest.setAsyncSupported(true);
+		context.addServlet(rest, "/rest/*");
+
+		ServletHolder files = new ServletHolder("default", DefaultServlet.class);
+		files.setInitParameter("dirAllowed", "false");
+		context.addServlet(files, "/");
+
+		WebSocketServerContainerInitializer.configure(context, (servletContext, websockets) -> {
+			websockets.addEndpoint(ChatWebsocket.class);
+			websockets.addEndpoint(DrawWebsocket.class);
+		});
+
+		server.setHandler(context);
+		server.start();
+		log.info("Started in {} ms, open http://localhost:{}" + CONTEXT_PATH + "/",
+				(System.nanoTime() - start) / 1_000_000, port);
+	}
+
+	/**
+	 * Stops the server. Points are saved, background threads stopped and the
+	 * database closed by {@link GameLifecycleListener}.
+	 */
+	public void stop() {
+		try {
+			server.stop();
+		} catch (Exception e) {
+			log.error("Server stop failed.", e);
+			Log.flush();
+		}
+	}
+
+	/**
+	 * Points persistence layer to H2 unless another database is already given
+	 * with system properties.
+	 *
+	 * @param database mem or path of the database file
+	 * @throws IOException when the file database path is empty
+	 */
+	private void useDatabase(String database) throws IOException {
+		if (System.getProperty(JDBC + "url") != null) {
+			log.info("Using database {}", System.getProperty(JDBC + "url"));
+			return;
+		}
+		if (database.trim().isEmpty())
+			throw new IOException("Path of the database file is empty.");
+		String url = database.equals("mem") ? "jdbc:h2:mem:kalambury;DB_CLOSE_DELAY=-1" : "jdbc:h2:file:" + database;
+		System.setProperty(JDBC + "driver", "org.h2.Driver");
+		System.setProperty(JDBC + "url", url);
+		System.setProperty(JDBC + "user", "sa");
+		System.setProperty(JDBC + "password", "");
+		log.info("Using H2 database {}", url);
+	}
+
+}
@@ -0,0 +1,54 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import db.WordService;
+import model.Word;
+
+/**
+ * WordDeck is tested in its own package to reach the constructor taking the
+ * words, the real one loads them from the database.
+ */
+class WordDeckTest {
+
+	@Test
+	public void blankWordIsNeverDealt() {
+		String[] words = WordService.append(new String[0],
+				Arrays.asList(new Word("kot"), new Word(" "), new Word(null), new Word(""), new Word("\t\n"),
+						new Word("pies")));
+		WordDeck deck = new WordDeck(() -> words);
+
+		assertEquals(2, words.length);
+		Set<String> dealt = new HashSet<>();
+		for (int i = 0; i < 20; i++)
+			dealt.add(deck.next());
+		assertEquals(new HashSet<>(Arrays.asList("kot", "pies")), dealt);
+	}
+
+	@Test
+	public void appendKeepsLoadedWords() {
+		String[] loaded = { "kot" };
+
+		String[] words = WordService.append(loaded, Arrays.asList(new Word("  "), new Word("pies")));
+
+		assertArrayEquals(new String[] { "kot", "pies" }, words);
+		assertArrayEquals(new String[] { "kot" }, loaded);
+	}
+
+	@Test
+	public void putBackWordIsDealtFirst() {
+		WordDeck deck = new WordDeck(() -> new String[] { "kot", "pies", "mysz" });
+
+		String word = deck.next();
+		deck.putBack(word);
+
+		assertEquals(word, deck.next());
+	}
+
+}
@@ -0,0 +1,93 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import db.DictionarySnapshot;
+import exception.GameIntegrityViolationException;
+import service.Log;
+
+class DictionarySnapshotTest {
+
+	@Test
+	public void parseValues() {
+		Map<String, String> values = new HashMap<>();
+		values.put("SECRET", "secret");
+		values.put("EXP_TIME_MILLIS", "3600000");
+		values.put("OUTBOX_CAPACITY", "64");
+
+		DictionarySnapshot snapshot = new DictionarySnapshot(values);
+
+		assertEquals("secret", snapshot.getSecret());
+		assertEquals(3600000L, snapshot.getExpirationTime());
+		assertEquals(64, snapshot.getOutboxCapacity());
+	}
+
+	@Test
+	public void defaultValues() {
+		DictionarySnapshot snapshot = new DictionarySnapshot(new HashMap<>());
+
+		assertEquals("DROP_OLDEST", snapshot.getSlowConsumerPolicy());
+		assertEquals(256, snapshot.getOutboxCapacity());
+	}
+
+	@Test
+	public void missingRequiredKey() {
+		DictionarySnapshot snapshot = new DictionarySnapshot(new HashMap<>());
+
+		assertThrows(GameIntegrityViolationException.class, () -> {
+			snapshot.getOwners();
+		});
+	}
+
+	@Test
+	public void wrongType() {
+		Map<String, String> values = new HashMap<>();
+		values.put("OUTBOX_CAPACITY", "many");
+
+		assertThrows(GameIntegrityViolationException.class, () -> {
+			new DictionarySnapshot(values);
+		});
+	}
+
+	@Test
+	public void valueOutOfRange() {
+		Map<String, String> values = new HashMap<>();
+		values.put("SCORE_FLUSH_INTERVAL_IN_MILLIS", "0");
+
+		assertThrows(GameIntegrityViolationException.class, () -> {
+			new DictionarySnapshot(values);
+		});
+
+		values.put("SCORE_FLUSH_INTERVAL_IN_MILLIS", "1");
+		values.put("OUTBOX_CAPACITY", "-5");
+		assertThrows(GameIntegrityViolationException.class, () -> {
+			new DictionarySnapshot(values);
+		});
+
+		// 0 disables reloading and batching, it is allowed
+		values.remove("OUTBOX_CAPACITY");
+		values.put("DICTIONARY_RELOAD_INTERVAL_IN_MILLIS", "0");
+		values.put("STROKE_FLUSH_INTERVAL_IN_MILLIS", "0");
+		assertEquals(1, new DictionarySnapshot(values).getScoreFlushInterval());
+	}
+
+	@Test
+	public void logLevel() {
+		Map<String, String> values = new HashMap<>();
+		values.put("LOG_LEVEL", "DEBUG");
+
+		assertEquals(Log.Level.DEBUG, new DictionarySnapshot(values).getLogLevel());
+		assertEquals(Log.Level.INFO, new DictionarySnapshot(new HashMap<>()).getLogLevel());
+
+		values.put("LOG_LEVEL", "LOUD");
+		assertThrows(GameIntegrityViolationException.class, () -> {
+			new DictionarySnapshot(values);
+		});
+	}
+
+}
@@ -0,0 +1,73 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import game.GameCoordinator;
+
+class GameCoordinatorTest {
+
+	@Test
+	public void eventsRunInOrderOfSubmission() throws InterruptedException {
+		GameCoordinator coordinator = new GameCoordinator();
+		List<Integer> handled = new ArrayList<>();
+		CountDownLatch done = new CountDownLatch(1);
+
+		for (int i = 0; i < 200; i++) {
+			int event = i;
+			coordinator.submit(() -> handled.add(event));
+		}
+		coordinator.submit(done::countDown);
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 200; i++)
+			assertEquals(i, (int) handled.get(i));
+	}
+
+	@Test
+	public void eventsOfOneRoomDoNotOverlap() throws InterruptedException {
+		GameCoordinator coordinator = new GameCoordinator();
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger overlaps = new AtomicInteger();
+		int threads = 4;
+		int eventsPerThread = 500;
+		CountDownLatch done = new CountDownLatch(threads * eventsPerThread);
+
+		for (int t = 0; t < threads; t++) {
+			new Thread(() -> {
+				for (int i = 0; i < eventsPerThread; i++) {
+					coordinator.submit(() -> {
+						if (running.incrementAndGet() != 1)
+							overlaps.incrementAndGet();
+						running.decrementAndGet();
+						done.countDown();
+					});
+				}
+			}).start();
+		}
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(0, overlaps.get());
+	}
+
+	@Test
+	public void failingEventDoesNotStopTheQueue() throws InterruptedException {
+		GameCoordinator coordinator = new GameCoordinator();
+		CountDownLatch done = new CountDownLatch(1);
+
+		coordinator.submit(() -> {
+			throw new IllegalStateException("test");
+		});
+		coordinator.submit(done::countDown);
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+	}
+
+}
@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 
 import exception.InvalidWordException;
+import model.NormalizedWord;
 import service.GameUtil;
 
 /**
@@ -96,4 +97,41 @@ class GameUtilTest {
 		assertTrue(gu.compareWords(w1, w2));
 	}
 
+	@Test
+	public void compareWordsPolishDiacritics() {
+		GameUtil gu = GameUtil.getInstance();
+		w1 = "ZOLW";
+		w2 = "w";
+
+		assertTrue(gu.compareWords(w1, w2));
+	}
+
+	@Test
+	public void compareWordsSpacesInside() {
+		GameUtil gu = GameUtil.getInstance();
+		w1 = " ko  \t MORSKI ";
+		w2 = "Ko morski";
+
+		assertTrue(gu.compareWords(w1, w2));
+	}
+
+	@Test
+	public void compareWordsPrefix() {
+		GameUtil gu = GameUtil.getInstance();
+
+		assertFalse(gu.compareWords("kot", "kotek"));
+		assertFalse(gu.compareWords("kotek", "kot"));
+		assertFalse(gu.compareWords("ko t", "kot"));
+	}
+
+	@Test
+	public void compareWordsNormalizedInAdvance() {
+		GameUtil gu = GameUtil.getInstance();
+		NormalizedWord word = new NormalizedWord("  dbo ");
+
+		assertTrue(gu.compareWords("zdzblo", word));
+		assertEquals("zdzblo", word.toString());
+		assertEquals(new NormalizedWord("DBO"), word);
+	}
+
 }
@@ -0,0 +1,84 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+
+class MetricsRegistryTest {
+
+	MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+	@Test
+	public void sameCounterForSameName() {
+		Counter c1 = metrics.counter("test_same_total", "Test.", "type", "A");
+		Counter c2 = metrics.counter("test_same_total", "Test.", "type", "A");
+		c1.increment();
+		c2.add(2);
+
+		assertSame(c1, c2);
+		assertEquals(3, c1.getAsLong());
+	}
+
+	@Test
+	public void prometheusFormat() {
+		metrics.counter("test_format_total", "Test counter.", "type", "MESSAGE").add(5);
+		metrics.gauge("test_format_gauge", "Test gauge.", () -> 7);
+
+		String scrape = metrics.scrape();
+
+		assertTrue(scrape.contains("# HELP test_format_total Test counter.\n"));
+		assertTrue(scrape.contains("# TYPE test_format_total counter\n"));
+		assertTrue(scrape.contains("test_format_total{type=\"MESSAGE\"} 5\n"));
+		assertTrue(scrape.contains("# TYPE test_format_gauge gauge\ntest_format_gauge 7\n"));
+	}
+
+	@Test
+	public void timerExportedInSeconds() {
+		Histogram timer = metrics.timer("test_timer_seconds", "Test timer.");
+		timer.record(2_000_000_000L);
+
+		String scrape = metrics.scrape();
+
+		assertTrue(scrape.contains("# TYPE test_timer_seconds summary\n"));
+		assertTrue(scrape.contains("test_timer_seconds_sum 2\n"));
+		assertTrue(scrape.contains("test_timer_seconds_count 1\n"));
+	}
+
+	@Test
+	public void histogramQuantiles() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 1000; i++)
+			histogram.record(i);
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000, histogram.getMax());
+		// Buckets are accurate to 12.5%
+		assertEquals(500, histogram.getQuantile(0.5), 500 / 8);
+		assertEquals(990, histogram.getQuantile(0.99), 990 / 8);
+		assertEquals(1000, histogram.getQuantile(1));
+	}
+
+	@Test
+	public void smallValuesAreExact() {
+		Histogram histogram = new Histogram();
+		histogram.record(3);
+		histogram.record(5);
+
+		assertEquals(3, histogram.getQuantile(0.5));
+		assertEquals(5, histogram.getQuantile(1));
+	}
+
+	@Test
+	public void sameNameOtherType() {
+		metrics.counter("test_type_total", "Test.");
+
+		assertThrows(IllegalArgumentException.class, () -> {
+			metrics.timer("test_type_total", "Test.");
+		});
+	}
+
+}
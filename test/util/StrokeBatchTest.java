@@ -0,0 +1,64 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import model.Polyline;
+import service.StrokeBatch;
+
+class StrokeBatchTest {
+
+	@Test
+	public void joinContinuousSegments() {
+		StrokeBatch batch = new StrokeBatch();
+		batch.add(new Polyline(1, new int[] { 0, 0, 10, 10 }));
+		batch.add(new Polyline(1, new int[] { 10, 10, 20, 15 }));
+		batch.add(new Polyline(1, new int[] { 20, 15, 30, 30, 40, 30 }));
+
+		List<Polyline> drained = batch.drain();
+
+		assertEquals(1, drained.size());
+		assertArrayEquals(new int[] { 0, 0, 10, 10, 20, 15, 30, 30, 40, 30 }, drained.get(0).getPoints());
+	}
+
+	@Test
+	public void splitOnGapAndColorChange() {
+		StrokeBatch batch = new StrokeBatch();
+		batch.add(new Polyline(1, new int[] { 0, 0, 10, 10 }));
+		batch.add(new Polyline(1, new int[] { 50, 50, 60, 60 }));
+		batch.add(new Polyline(2, new int[] { 60, 60, 70, 70 }));
+
+		List<Polyline> drained = batch.drain();
+
+		assertEquals(3, drained.size());
+		assertEquals(2, drained.get(2).getPaletteIndex());
+	}
+
+	@Test
+	public void splitOnExactColorChange() {
+		StrokeBatch batch = new StrokeBatch();
+		batch.add(new Polyline(1, 0x202020, new int[] { 0, 0, 10, 10 }));
+		batch.add(new Polyline(1, 0x212121, new int[] { 10, 10, 20, 20 }));
+
+		List<Polyline> drained = batch.drain();
+
+		assertEquals(2, drained.size());
+		assertEquals(0x212121, drained.get(1).getRgb());
+	}
+
+	@Test
+	public void countPointsAndDrain() {
+		StrokeBatch batch = new StrokeBatch();
+		batch.add(new Polyline(1, new int[] { 0, 0, 10, 10 }));
+		batch.add(new Polyline(1, new int[] { 10, 10, 20, 20 }));
+
+		assertEquals(3, batch.getPointCount());
+		batch.drain();
+		assertTrue(batch.isEmpty());
+		assertTrue(batch.drain().isEmpty());
+	}
+
+}
@@ -0,0 +1,135 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import exception.InvalidStrokeException;
+import model.Cartesian;
+import model.DrawingMessage;
+import model.Polyline;
+import service.StrokeCodec;
+
+class StrokeCodecTest {
+
+	StrokeCodec sc = StrokeCodec.getInstance();
+
+	@Test
+	public void encodeDecodeRoundTrip() {
+		Polyline p1 = new Polyline(3, new int[] { 0, 0, 10, 5, 9, 4000, 4095, 4095 });
+		Polyline p2 = new Polyline(255, new int[] { 100, 200, 90, 210 });
+
+		List<Polyline> decoded = sc.decode(sc.encode(Arrays.asList(p1, p2)));
+
+		assertEquals(2, decoded.size());
+		assertEquals(3, decoded.get(0).getPaletteIndex());
+		assertArrayEquals(p1.getPoints(), decoded.get(0).getPoints());
+		assertEquals(255, decoded.get(1).getPaletteIndex());
+		assertArrayEquals(p2.getPoints(), decoded.get(1).getPoints());
+	}
+
+	@Test
+	public void decodeDoesNotMoveBufferPosition() {
+		ByteBuffer frame = sc.encode(Arrays.asList(new Polyline(0, new int[] { 1, 2, 3, 4 })));
+
+		sc.decode(frame);
+
+		assertEquals(0, frame.position());
+	}
+
+	@Test
+	public void smallMovesAreCompact() {
+		ByteBuffer frame = sc.encode(Arrays.asList(new Polyline(0, new int[] { 1000, 1000, 1003, 998 })));
+
+		// version + palette + count + first point + two one-byte deltas
+		assertEquals(1 + 1 + 2 + 4 + 2, frame.remaining());
+	}
+
+	@Test
+	public void decodeTruncated() {
+		ByteBuffer frame = sc.encode(Arrays.asList(new Polyline(0, new int[] { 1, 2, 3, 4 })));
+		frame.limit(frame.limit() - 1);
+
+		assertThrows(InvalidStrokeException.class, () -> {
+			sc.decode(frame);
+		});
+	}
+
+	@Test
+	public void decodeCountLongerThanFrame() {
+		// 65535 points announced in a 4-byte frame
+		ByteBuffer frame = ByteBuffer.wrap(new byte[] { 1, 0, (byte) 0xFF, (byte) 0xFF });
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long allocatedBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+		assertThrows(InvalidStrokeException.class, () -> {
+			sc.decode(frame);
+		});
+		// Points array of the announced size would take 512 KB
+		long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+		assertTrue(allocated < 64 * 1024, "Allocated " + allocated + " bytes for a 4-byte frame");
+	}
+
+	@Test
+	public void decodeWrongVersion() {
+		assertThrows(InvalidStrokeException.class, () -> {
+			sc.decode(ByteBuffer.wrap(new byte[] { 7, 0, 0, 2, 0, 0, 0, 0, 0, 0 }));
+		});
+	}
+
+	@Test
+	public void decodeOutsideOfCanvas() {
+		// First point in the corner, second point moved right by one unit
+		ByteBuffer frame = ByteBuffer.wrap(new byte[] { 1, 0, 0, 2, 0x0F, (byte) 0xFF, 0x0F, (byte) 0xFF, 2, 0 });
+
+		assertThrows(InvalidStrokeException.class, () -> {
+			sc.decode(frame);
+		});
+	}
+
+	@Test
+	public void jsonSegmentToPolyline() {
+		DrawingMessage msg = new DrawingMessage(new Cartesian(0, 0), new Cartesian(400, 300), new Cartesian(800, 600),
+				"rgba(255,0,0,1)");
+
+		Polyline p = sc.toPolyline(msg);
+
+		assertArrayEquals(new int[] { 0, 0, 2048, 2048 }, p.getPoints());
+		assertEquals("rgba(255,0,0,1)", sc.paletteColor(p.getPaletteIndex()));
+	}
+
+	@Test
+	public void jsonKeepsExactColor() {
+		DrawingMessage msg = new DrawingMessage(new Cartesian(0, 0), new Cartesian(400, 300), new Cartesian(800, 600),
+				"rgba(18,52,86,1)");
+
+		Polyline p = sc.toPolyline(msg);
+		List<DrawingMessage> segments = sc.toDrawingMessages(p);
+
+		assertEquals(0x123456, p.getRgb());
+		assertEquals(1, segments.size());
+		assertEquals("rgba(18,52,86,1)", segments.get(0).getColor());
+		// Binary strokes know the palette color only
+		assertEquals(sc.paletteColor(7), sc.toDrawingMessages(new Polyline(7, new int[] { 0, 0, 1, 1 })).get(0)
+				.getColor());
+	}
+
+	@Test
+	public void paletteKeepsBlackAndWhite() {
+		assertEquals("rgba(0,0,0,1)", sc.paletteColor(sc.paletteIndex("rgba(0,0,0,1)")));
+		assertEquals("rgba(255,255,255,1)", sc.paletteColor(sc.paletteIndex("rgb(255, 255, 255)")));
+	}
+
+	@Test
+	public void paletteInvalidColor() {
+		assertEquals(0, sc.paletteIndex("blue"));
+		assertEquals(0, sc.paletteIndex(null));
+	}
+
+}
@@ -0,0 +1,72 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import game.StrokeLog;
+import model.Polyline;
+
+class StrokeLogTest {
+
+	@Test
+	public void snapshotInOrder() {
+		StrokeLog log = new StrokeLog(1000);
+		Polyline p1 = new Polyline(1, new int[] { 0, 0, 10, 10 });
+		Polyline p2 = new Polyline(2, new int[] { 5, 5, 6, 6, 7, 7 });
+
+		log.append(Arrays.asList(p1, p2));
+		List<Polyline> snapshot = log.snapshot();
+
+		assertEquals(2, snapshot.size());
+		assertArrayEquals(p1.getPoints(), snapshot.get(0).getPoints());
+		assertEquals(2, snapshot.get(1).getPaletteIndex());
+		assertArrayEquals(p2.getPoints(), snapshot.get(1).getPoints());
+		assertEquals(5, log.getPointCount());
+	}
+
+	@Test
+	public void clear() {
+		StrokeLog log = new StrokeLog(1000);
+		log.append(Collections.singletonList(new Polyline(1, new int[] { 0, 0, 10, 10 })));
+
+		log.clear();
+
+		assertTrue(log.isEmpty());
+		assertTrue(log.snapshot().isEmpty());
+	}
+
+	@Test
+	public void compactStraightLine() {
+		StrokeLog log = new StrokeLog(100);
+		int[] line = new int[2 * 200];
+		for (int i = 0; i < 200; i++) {
+			line[2 * i] = i;
+			line[2 * i + 1] = 2 * i;
+		}
+
+		log.append(Collections.singletonList(new Polyline(3, line)));
+		List<Polyline> snapshot = log.snapshot();
+
+		// Straight line is simplified to its ends
+		assertEquals(1, snapshot.size());
+		assertArrayEquals(new int[] { 0, 0, 199, 398 }, snapshot.get(0).getPoints());
+	}
+
+	@Test
+	public void compactDropsOldest() {
+		StrokeLog log = new StrokeLog(10);
+		for (int i = 0; i < 10; i++)
+			log.append(Collections.singletonList(new Polyline(i, new int[] { 0, 0, 1000, 0, 1000, 1000 })));
+
+		List<Polyline> snapshot = log.snapshot();
+
+		assertTrue(log.getPointCount() <= 10);
+		assertEquals(9, snapshot.get(snapshot.size() - 1).getPaletteIndex());
+	}
+
+}
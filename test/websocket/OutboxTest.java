@@ -0,0 +1,185 @@
+package websocket;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import org.junit.jupiter.api.Test;
+
+import websocket.Outbox.Frame;
+
+/**
+ * Outbox is in the package of the websocket endpoints, the test is there too
+ * to reach the package-private constructor of {@link Broadcaster}.
+ */
+class OutboxTest {
+
+	@Test
+	public void sendsOneFrameAtATimeInOrder() {
+		StubSession session = new StubSession();
+		Broadcaster broadcaster = new Broadcaster(SlowConsumerPolicy.DROP_OLDEST, 16);
+		broadcaster.open(session.proxy);
+
+		broadcaster.send(session.proxy, Frame.text("a"));
+		broadcaster.send(session.proxy, Frame.text("b"));
+		broadcaster.send(session.proxy, Frame.text("c"));
+
+		assertEquals(1, session.sent.size());
+		session.complete();
+		session.complete();
+		assertEquals(3, session.sent.size());
+		assertEquals("a", session.sent.get(0));
+		assertEquals("b", session.sent.get(1));
+		assertEquals("c", session.sent.get(2));
+		assertEquals(0, session.outbox().size());
+	}
+
+	@Test
+	public void dropsOldestStrokeWhenFull() {
+		StubSession session = new StubSession();
+		Broadcaster broadcaster = new Broadcaster(SlowConsumerPolicy.DROP_OLDEST, 2);
+		broadcaster.open(session.proxy);
+
+		broadcaster.send(session.proxy, Frame.text("in flight"));
+		broadcaster.send(session.proxy, Frame.stroke("1"));
+		broadcaster.send(session.proxy, Frame.text("chat"));
+		broadcaster.send(session.proxy, Frame.stroke("2"));
+
+		assertEquals(2, session.outbox().size());
+		session.complete();
+		session.complete();
+		assertEquals("chat", session.sent.get(1));
+		assertEquals("2", session.sent.get(2));
+	}
+
+	@Test
+	public void closeRacingSendDoesNotSpin() throws InterruptedException {
+		StubSession session = new StubSession();
+		AtomicBoolean closeWhileQueuing = new AtomicBoolean(true);
+		// Closes the outbox after the sender has checked it but before the frame is
+		// in the queue, the frame lands in the queue cleared by close
+		Broadcaster broadcaster = new Broadcaster(SlowConsumerPolicy.DROP_OLDEST, 16) {
+			@Override
+			void queued(int depth) {
+				super.queued(depth);
+				if (closeWhileQueuing.getAndSet(false))
+					close(session.proxy);
+			}
+		};
+		broadcaster.open(session.proxy);
+
+		Thread sender = new Thread(() -> broadcaster.send(session.proxy, Frame.text("late")));
+		sender.setDaemon(true);
+		sender.start();
+		sender.join(5000);
+
+		assertFalse(sender.isAlive(), "Sender spins on the closed outbox");
+		assertTrue(session.sent.isEmpty());
+		assertEquals(0, session.outbox().size());
+	}
+
+	@Test
+	public void concurrentSendersAndCloseFinish() throws InterruptedException {
+		for (int round = 0; round < 50; round++) {
+			StubSession session = new StubSession();
+			session.completeAtOnce = true;
+			Broadcaster broadcaster = new Broadcaster(SlowConsumerPolicy.DROP_OLDEST, 64);
+			broadcaster.open(session.proxy);
+
+			CountDownLatch start = new CountDownLatch(1);
+			List<Thread> senders = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				Thread sender = new Thread(() -> {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int j = 0; j < 200; j++)
+						broadcaster.send(session.proxy, Frame.stroke("s"));
+				});
+				sender.setDaemon(true);
+				sender.start();
+				senders.add(sender);
+			}
+			start.countDown();
+			broadcaster.close(session.proxy);
+
+			for (Thread sender : senders) {
+				sender.join(5000);
+				assertFalse(sender.isAlive(), "Sender spins on the closed outbox");
+			}
+			assertEquals(0, session.outbox().size());
+		}
+	}
+
+	/**
+	 * Open session recording the sent text frames. Sends complete when
+	 * {@link #complete()} is called, or at once if completeAtOnce is set.
+	 */
+	private static class StubSession {
+
+		private final List<String> sent = new ArrayList<>();
+		private final List<SendHandler> pending = new ArrayList<>();
+		private final Map<String, Object> userProperties = new HashMap<>();
+		private volatile boolean completeAtOnce;
+		private final Session proxy;
+
+		StubSession() {
+			RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+					OutboxTest.class.getClassLoader(), new Class<?>[] { RemoteEndpoint.Async.class },
+					(p, method, args) -> {
+						SendHandler handler = (SendHandler) args[1];
+						if (completeAtOnce) {
+							handler.onResult(new SendResult());
+						} else {
+							sent.add((String) args[0]);
+							pending.add(handler);
+						}
+						return null;
+					});
+			proxy = (Session) Proxy.newProxyInstance(OutboxTest.class.getClassLoader(),
+					new Class<?>[] { Session.class }, (p, method, args) -> {
+						switch (method.getName()) {
+						case "getId":
+							return "session";
+						case "isOpen":
+							return true;
+						case "getUserProperties":
+							return userProperties;
+						case "getAsyncRemote":
+							return remote;
+						case "equals":
+							return p == args[0];
+						case "hashCode":
+							return System.identityHashCode(p);
+						default:
+							return null;
+						}
+					});
+		}
+
+		void complete() {
+			pending.remove(0).onResult(new SendResult());
+		}
+
+		Outbox outbox() {
+			for (Object value : userProperties.values()) {
+				if (value instanceof Outbox)
+					return (Outbox) value;
+			}
+			throw new IllegalStateException("Session has no outbox.");
+		}
+	}
+}